@@ -18,6 +18,9 @@ alias adb="/c/asdk/android-sdk-windows-1.0_r2/tools/adb"
 # To build & install on device:
 # ant && adb -d install -r bin/Flingers-debug.apk
 
+# To run the desktop unit tests (no emulator needed):
+# ant test -Djunit-jar=/path/to/junit-3.8.2.jar
+
 # To see logs:
 # adb -e logcat
 
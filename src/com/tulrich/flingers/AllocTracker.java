@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tulrich.flingers;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Counts heap allocations per frame and tracks the size and high-water
+ * mark of the object pools.
+ *
+ * Allocations come from two places.  Count() calls, placed by hand at
+ * the sites we know about, say what allocated.  A Counter, when there
+ * is one, measures everything the simulation thread allocates between
+ * BeginMeasure() and EndMeasure(), including garbage nobody placed a
+ * Count() for (collection growth, sort buffers, boxing).  On the device
+ * that is Debug.getThreadAllocCount() around GameUpdate() and
+ * RecordFrame().  Without a Counter only the hand-placed sites and pool
+ * growth are seen.  Neither sees TargetsUpdate's worker threads except
+ * through their Count() calls.
+ *
+ * Allocating a Shot, Target or Flower is expected when something
+ * spawns.  Any other allocation is garbage, and a frame that spawns
+ * nothing should not make any: once the pools have warmed up, such a
+ * frame counts as a steady-state violation.  AssertSteadyState()
+ * throws if there were any; see AllocTrackerTest.
+ *
+ * Only debug builds track anything: a tracker built with enabled
+ * false returns at once from every call.
+ *
+ * Count() may be called from TargetsUpdate's worker threads; the rest
+ * belongs to the simulation thread.
+ */
+class AllocTracker {
+
+  // Allocation sites.  Entity sites come first.
+  public static final int SHOT = 0;
+  public static final int TARGET = 1;
+  public static final int FLOWER = 2;
+  public static final int SCORE_TEXT = 3;  // String.format in AddScore
+  public static final int DRAW_TEXT = 4;  // String.format in GameDraw
+  public static final int MESSAGE = 5;  // Bundles for the text views
+  public static final int CIRCLE_POOL = 6;  // pool growth, see Pool()
+  public static final int COORD_POOL = 7;
+  public static final int COMMAND_POOL = 8;
+  public static final int BATCH = 9;  // growth of the projection batch arrays
+  public static final int NUM_SITES = 10;
+
+  private static final int FIRST_GARBAGE_SITE = SCORE_TEXT;
+
+  // Pools; each maps onto its growth site above.
+  public static final int POOL_CIRCLES = 0;
+  public static final int POOL_COORDS = 1;
+  public static final int POOL_COMMANDS = 2;
+  public static final int NUM_POOLS = 3;
+
+  private static final int[] POOL_SITES = { CIRCLE_POOL, COORD_POOL, COMMAND_POOL };
+
+  private static final String[] SITE_NAMES = {
+    "shot", "target", "flower", "score-text", "draw-text", "message",
+    "circle-pool", "coord-pool", "command-pool", "batch",
+  };
+  // "commands" covers all three of the frame buffer's lists.
+  private static final String[] POOL_NAMES = { "circles", "coords", "commands" };
+
+  /** Frames before pool growth and garbage start to count as violations. */
+  private static final int WARMUP_FRAMES = 60;
+
+  /**
+   * A running total that grows with every heap allocation the calling
+   * thread makes.  It may count objects or bytes; only whether it
+   * moved matters.
+   */
+  public interface Counter {
+    long ThreadAllocations();
+  }
+
+  private final boolean mEnabled;
+  private final Counter mCounter;
+  private long mMeasureStart;
+  private long mFrameMeasured = 0;
+  private long mMeasuredTotal = 0;
+  private final AtomicIntegerArray mFrameCounts = new AtomicIntegerArray(NUM_SITES);
+  private final long[] mTotals = new long[NUM_SITES];
+  private final int[] mPoolCapacity = new int[NUM_POOLS];
+  private final int[] mPoolInUse = new int[NUM_POOLS];
+  private final int[] mPoolHighWater = new int[NUM_POOLS];
+  private int mFrames = 0;
+  private int mAllocatingFrames = 0;
+  private int mViolations = 0;
+  private String mFirstViolation;
+
+  /** @param enabled true to track; normally whether this is a debug build */
+  public AllocTracker(boolean enabled) {
+    this(enabled, null);
+  }
+
+  /**
+   * @param enabled true to track; normally whether this is a debug build
+   * @param counter measures the simulation thread's allocations, or null
+   */
+  public AllocTracker(boolean enabled, Counter counter) {
+    mEnabled = enabled;
+    mCounter = counter;
+  }
+
+  public boolean Enabled() {
+    return mEnabled;
+  }
+
+  /** Notes one allocation at site. */
+  public void Count(int site) {
+    if (!mEnabled) {
+      return;
+    }
+    mFrameCounts.incrementAndGet(site);
+  }
+
+  /** Starts measuring the simulation thread's allocations. */
+  public void BeginMeasure() {
+    if (!mEnabled || mCounter == null) {
+      return;
+    }
+    mMeasureStart = mCounter.ThreadAllocations();
+  }
+
+  /**
+   * Stops measuring, on the thread that called BeginMeasure().  What
+   * was allocated in between counts towards the current frame.
+   */
+  public void EndMeasure() {
+    if (!mEnabled || mCounter == null) {
+      return;
+    }
+    mFrameMeasured += mCounter.ThreadAllocations() - mMeasureStart;
+  }
+
+  /**
+   * Notes a pool's current use and capacity.  Growth in capacity
+   * counts as an allocation at the pool's site.
+   */
+  public void Pool(int pool, int inUse, int capacity) {
+    if (!mEnabled) {
+      return;
+    }
+    if (capacity > mPoolCapacity[pool]) {
+      if (mPoolCapacity[pool] != 0) {
+        Count(POOL_SITES[pool]);
+      }
+      mPoolCapacity[pool] = capacity;
+    }
+    mPoolInUse[pool] = inUse;
+    if (inUse > mPoolHighWater[pool]) {
+      mPoolHighWater[pool] = inUse;
+    }
+  }
+
+  /**
+   * Closes out the current frame.
+   *
+   * @return true if it was a steady-state frame that allocated
+   */
+  public boolean EndFrame() {
+    if (!mEnabled) {
+      return false;
+    }
+    mFrames++;
+    boolean spawned = false;
+    boolean garbage = false;
+    for (int i = 0; i < NUM_SITES; i++) {
+      int n = mFrameCounts.getAndSet(i, 0);
+      if (n == 0) {
+        continue;
+      }
+      mTotals[i] += n;
+      if (i < FIRST_GARBAGE_SITE) {
+        spawned = true;
+      } else {
+        garbage = true;
+      }
+    }
+    if (mFrameMeasured > 0) {
+      // Spawns show up here too, so this only marks the frame as
+      // garbage if nothing spawned.
+      mMeasuredTotal += mFrameMeasured;
+      mFrameMeasured = 0;
+      garbage = true;
+    }
+    if (spawned || garbage) {
+      mAllocatingFrames++;
+    }
+    if (garbage && !spawned && mFrames > WARMUP_FRAMES) {
+      mViolations++;
+      if (mFirstViolation == null) {
+        mFirstViolation = "frame " + mFrames + ": " + Report();
+      }
+      return true;
+    }
+    return false;
+  }
+
+  public int Violations() {
+    return mViolations;
+  }
+
+  public int HighWater(int pool) {
+    return mPoolHighWater[pool];
+  }
+
+  /** Throws if any steady-state frame has allocated since Reset(). */
+  public void AssertSteadyState() {
+    if (mViolations > 0) {
+      throw new IllegalStateException(
+          mViolations + " steady-state frames allocated; first at " + mFirstViolation);
+    }
+  }
+
+  /** Clears the counts, but keeps pool capacities (they're still warm). */
+  public void Reset() {
+    for (int i = 0; i < NUM_SITES; i++) {
+      mTotals[i] = 0;
+    }
+    mMeasuredTotal = 0;
+    for (int i = 0; i < NUM_POOLS; i++) {
+      mPoolHighWater[i] = mPoolInUse[i];
+    }
+    mAllocatingFrames = 0;
+    mViolations = 0;
+    mFirstViolation = null;
+  }
+
+  /**
+   * Returns a one-line summary, like
+   * "alloc frames=12 violations=3 measured=480 shot=2 draw-text=10 | circles 40/64 hw=52 ...".
+   * measured is there only with a Counter, in the Counter's units.
+   */
+  public String Report() {
+    StringBuilder sb = new StringBuilder(128);
+    sb.append("alloc frames=").append(mAllocatingFrames);
+    sb.append(" violations=").append(mViolations);
+    if (mCounter != null) {
+      sb.append(" measured=").append(mMeasuredTotal);
+    }
+    for (int i = 0; i < NUM_SITES; i++) {
+      if (mTotals[i] != 0) {
+        sb.append(' ').append(SITE_NAMES[i]).append('=').append(mTotals[i]);
+      }
+    }
+    sb.append(" |");
+    for (int i = 0; i < NUM_POOLS; i++) {
+      sb.append(' ').append(POOL_NAMES[i]).append(' ').append(mPoolInUse[i]);
+      sb.append('/').append(mPoolCapacity[i]);
+      sb.append(" hw=").append(mPoolHighWater[i]);
+    }
+    return sb.toString();
+  }
+}
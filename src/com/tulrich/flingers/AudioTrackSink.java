@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tulrich.flingers;
+
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTrack;
+import android.os.Process;
+
+/**
+ * SoundMixer output to the device, through a streaming AudioTrack.
+ * The track's buffer is kept as small as the platform allows, so a
+ * triggered sound is heard soon after the buffer that starts it is
+ * mixed.
+ */
+class AudioTrackSink implements SoundMixer.Sink {
+  private final AudioTrack mTrack;
+  private boolean mPrioritySet = false;
+  private boolean mPlaying = false;
+
+  /** @param bufferFrames the mixer's buffer size, in samples */
+  public AudioTrackSink(int bufferFrames) {
+    int minBytes = AudioTrack.getMinBufferSize(SoundMixer.SAMPLE_RATE,
+                                               AudioFormat.CHANNEL_CONFIGURATION_MONO,
+                                               AudioFormat.ENCODING_PCM_16BIT);
+    // Room for at least two mixer buffers, so the mixer can run ahead
+    // by one.
+    int bytes = Math.max(minBytes, 2 * bufferFrames * 2);
+    mTrack = new AudioTrack(AudioManager.STREAM_MUSIC, SoundMixer.SAMPLE_RATE,
+                            AudioFormat.CHANNEL_CONFIGURATION_MONO,
+                            AudioFormat.ENCODING_PCM_16BIT, bytes,
+                            AudioTrack.MODE_STREAM);
+  }
+
+  public void Write(short[] pcm, int count) {
+    if (!mPrioritySet) {
+      // We're on the mixer thread now.
+      Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+      mPrioritySet = true;
+    }
+    if (!mPlaying) {
+      mTrack.play();
+      mPlaying = true;
+    }
+    mTrack.write(pcm, 0, count);
+  }
+
+  public void Pause() {
+    if (mPlaying) {
+      // In streaming mode, stop() lets what's been written play out.
+      mTrack.stop();
+      mPlaying = false;
+    }
+  }
+
+  public void Close() {
+    mTrack.stop();
+    mTrack.release();
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2007 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tulrich.flingers;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+
+/**
+ * RenderSink that draws into an android.graphics.Canvas.
+ *
+ * Uses a single Paint, which gets loaded from the RenderPaint for
+ * each primitive.
+ */
+class CanvasRenderSink implements RenderSink {
+  private Canvas mCanvas;
+  private int mSaveCount;
+  private Paint mPaint = new Paint();
+  private RectF mScratchRect = new RectF(0, 0, 0, 0);
+
+  /**
+   * Sets the canvas to draw into, valid until End().  Coordinates are
+   * scaled by (scaleX, scaleY) on the way in, so callers can keep
+   * drawing in view coordinates on a smaller surface.
+   */
+  public void Begin(Canvas canvas, float scaleX, float scaleY) {
+    mCanvas = canvas;
+    mSaveCount = canvas.save();
+    if (scaleX != 1 || scaleY != 1) {
+      canvas.scale(scaleX, scaleY);
+    }
+  }
+
+  /** Restores the canvas state Begin() found. */
+  public void End() {
+    mCanvas.restoreToCount(mSaveCount);
+    mCanvas = null;
+  }
+
+  private Paint Apply(RenderPaint p) {
+    mPaint.setColor(p.mColor);
+    mPaint.setAntiAlias(p.mAntiAlias);
+    mPaint.setStrokeWidth(p.mStrokeWidth);
+    mPaint.setStrokeCap(p.mRoundCap ? Paint.Cap.ROUND : Paint.Cap.BUTT);
+    mPaint.setTextSize(p.mTextSize);
+    return mPaint;
+  }
+
+  public void DrawCircle(float x, float y, float radius, RenderPaint paint) {
+    mCanvas.drawCircle(x, y, radius, Apply(paint));
+  }
+
+  public void DrawOval(float left, float top, float right, float bottom,
+                       RenderPaint paint) {
+    mScratchRect.set(left, top, right, bottom);
+    mCanvas.drawOval(mScratchRect, Apply(paint));
+  }
+
+  public void DrawLine(float x0, float y0, float x1, float y1,
+                       RenderPaint paint) {
+    mCanvas.drawLine(x0, y0, x1, y1, Apply(paint));
+  }
+
+  public void DrawRect(float left, float top, float right, float bottom,
+                       RenderPaint paint) {
+    mCanvas.drawRect(left, top, right, bottom, Apply(paint));
+  }
+
+  public void DrawText(String text, float x, float y, RenderPaint paint) {
+    mCanvas.drawText(text, 0, text.length(), x, y, Apply(paint));
+  }
+
+  public float MeasureText(String text, RenderPaint paint) {
+    return Apply(paint).measureText(text, 0, text.length());
+  }
+}
@@ -17,6 +17,7 @@
 package com.tulrich.flingers;
 
 import android.app.Activity;
+import android.graphics.PixelFormat;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.Menu;
@@ -46,6 +47,11 @@ public class Flingers extends Activity {
   private static final int MENU_START = 3;
   private static final int MENU_STOP = 4;
   private static final int MENU_ABOUT = 5;
+  private static final int MENU_SWARM = 6;
+  private static final int MENU_PROFILE = 7;
+  private static final int MENU_TRACE = 8;
+  private static final int MENU_RENDER_SCALE = 9;
+  private static final int MENU_PROFILE_FILE = 10;
 
   /** A handle to the thread that's actually running the animation. */
   private FlingersThread mFlingersThread;
@@ -68,6 +74,11 @@ public class Flingers extends Activity {
     menu.add(0, MENU_PAUSE, 0, R.string.menu_pause);
     menu.add(0, MENU_RESUME, 0, R.string.menu_resume);
     menu.add(0, MENU_ABOUT, 0, R.string.menu_about);
+    menu.add(0, MENU_SWARM, 0, R.string.menu_swarm);
+    menu.add(0, MENU_PROFILE, 0, R.string.menu_profile);
+    menu.add(0, MENU_TRACE, 0, R.string.menu_trace);
+    menu.add(0, MENU_RENDER_SCALE, 0, R.string.menu_render_scale);
+    menu.add(0, MENU_PROFILE_FILE, 0, R.string.menu_profile_file);
 
     return true;
   }
@@ -97,6 +108,23 @@ public class Flingers extends Activity {
       case MENU_ABOUT:
         mFlingersThread.About();
         return true;
+      case MENU_SWARM:
+        mFlingersThread.GameSetState(FlingersView.GameState.SWARM);
+        return true;
+      case MENU_PROFILE:
+        mFlingersThread.ToggleProfilerOverlay();
+        return true;
+      case MENU_TRACE:
+        mFlingersThread.DumpTrace();
+        return true;
+      case MENU_PROFILE_FILE:
+        mFlingersThread.ToggleProfileFile();
+        return true;
+      case MENU_RENDER_SCALE:
+        // Cycle full, 3/4 and 1/2 resolution.
+        float scale = mFlingersView.getRenderScale();
+        mFlingersView.setRenderScale(scale > 0.9f ? 0.75f : scale > 0.6f ? 0.5f : 1);
+        return true;
     }
 
     return false;
@@ -122,6 +150,10 @@ public class Flingers extends Activity {
     mFlingersView = (FlingersView) findViewById(R.id.flingers);
     mFlingersThread = mFlingersView.getThread();
 
+    // 16-bit color: the scene is flat fills, and it halves the
+    // bandwidth of every pixel drawn.
+    mFlingersView.setRenderFormat(PixelFormat.RGB_565);
+
     // give the FlingersView a handle to the TextView used for messages
     mFlingersView.setTextView((TextView) findViewById(R.id.text));
     mFlingersView.setScoreTextView((TextView) findViewById(R.id.score));
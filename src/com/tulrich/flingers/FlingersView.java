@@ -17,27 +17,37 @@
 package com.tulrich.flingers;
 
 import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
-import android.graphics.Paint;
-import android.graphics.RectF;
+import android.graphics.PixelFormat;
 import android.graphics.drawable.Drawable;
 import android.os.Bundle;
+import android.os.Debug;
 import android.os.Handler;
 import android.os.Message;
 import android.os.SystemClock;
 import android.os.Vibrator;
 import android.util.AttributeSet;
+import android.util.Log;
 import android.view.KeyEvent;
 import android.view.MotionEvent;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 import android.view.View;
 import android.widget.TextView;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.LockSupport;
 
 // TODO:
 // wings
@@ -72,7 +82,7 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
     public float SortKey() {
       return 0;
     }
-    public void Draw(Canvas canvas) {
+    public void Draw(RenderSink sink) {
     }
   };
 
@@ -81,7 +91,7 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
     public float mY;
     public float mZ;
     public float mRadius;
-    public Paint mPaint;
+    public RenderPaint mPaint;
 
     public Circle() {
     }
@@ -90,7 +100,7 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
       return mZ;
     }
 
-    public void set(float x, float y, float z, float radius, Paint paint) {
+    public void set(float x, float y, float z, float radius, RenderPaint paint) {
       mX = x;
       mY = y;
       mZ = z;
@@ -106,8 +116,8 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
       mPaint = c.mPaint;
     }
 
-    public void Draw(Canvas canvas) {
-      canvas.drawCircle(mX, mY, mRadius, mPaint);
+    public void Draw(RenderSink sink) {
+      sink.DrawCircle(mX, mY, mRadius, mPaint);
     }
   };
 
@@ -115,21 +125,75 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
   private ArrayList<Circle> mCirclePool = new ArrayList<Circle>();
   private int mNextCircle = 0;
 
+  /** Per-phase frame timing; see FrameProfiler. */
+  private FrameProfiler mProfiler = new FrameProfiler();
+
+  /** Ring of recent game-loop events, for chrome://tracing; debug builds only. */
+  private final TraceRecorder mTrace;
+
+  /** Per-frame allocation counts and pool sizes; see AllocTracker. */
+  private AllocTracker mAllocs;
+
   private void DisplayListClear() {
     mDisplayList.clear();
     mNextCircle = 0;
   }
 
-  private void DisplayListDraw(Canvas canvas) {
-    // Sort the drawables.
-    //
-    // NOTE: this causes a link-time warning "unchecked or unsafe
-    // operations".  Why?
-    Collections.sort(mDisplayList);
+  // Merge buffers for DisplayListSort(); they only grow.
+  private Drawable[] mSortItems = new Drawable[0];
+  private Drawable[] mSortScratch = new Drawable[0];
+
+  /**
+   * Sorts the display list back to front.  This is a stable bottom-up
+   * merge sort, so it gives the same order Collections.sort() did, but
+   * it reuses its arrays instead of allocating a copy every frame.
+   */
+  private void DisplayListSort() {
+    int n = mDisplayList.size();
+    if (mSortItems.length < n) {
+      mSortItems = new Drawable[n * 2];
+      mSortScratch = new Drawable[n * 2];
+    }
+    Drawable[] from = mSortItems;
+    Drawable[] to = mSortScratch;
+    for (int i = 0; i < n; i++) {
+      from[i] = mDisplayList.get(i);
+    }
+    for (int width = 1; width < n; width *= 2) {
+      for (int lo = 0; lo < n; lo += 2 * width) {
+        int mid = Math.min(lo + width, n);
+        int hi = Math.min(lo + 2 * width, n);
+        int i = lo;
+        int j = mid;
+        int k = lo;
+        while (i < mid && j < hi) {
+          // Ties take the left run, which keeps it stable.
+          to[k++] = from[j].compareTo(from[i]) < 0 ? from[j++] : from[i++];
+        }
+        while (i < mid) {
+          to[k++] = from[i++];
+        }
+        while (j < hi) {
+          to[k++] = from[j++];
+        }
+      }
+      Drawable[] swap = from;
+      from = to;
+      to = swap;
+    }
+    for (int i = 0; i < n; i++) {
+      mDisplayList.set(i, from[i]);
+    }
+  }
+
+  private void DisplayListDraw(RenderSink sink) {
+    long t = System.nanoTime();
+    DisplayListSort();
+    mProfiler.Mark(FrameProfiler.SORT, t);
 
     // Draw back-to-front.
     for (int i = 0; i < mDisplayList.size(); i++) {
-      mDisplayList.get(i).Draw(canvas);
+      mDisplayList.get(i).Draw(sink);
     }
   }
 
@@ -150,7 +214,7 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
     NextCircle().copy(c);
   }
 
-  private void AddCircle(float x, float y, float z, float radius, Paint paint) {
+  private void AddCircle(float x, float y, float z, float radius, RenderPaint paint) {
     NextCircle().set(x, y, z, radius, paint);
   }
 
@@ -166,20 +230,54 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
 
     public float mDirX = 0;
     public float mDirY = 0;
+
+    // Current level-of-detail tier; see FlingersThread.LodUpdate().
+    public int mLod = 0;
+
+    // Screen position and depth scale of (mX, mY, 0), cached by
+    // FlingersThread.ProjectScreen() until the object moves or the
+    // surface changes size.
+    public float mScreenX;
+    public float mScreenY;
+    public float mScreenZ;
+    public float mScreenForX = Float.NaN;
+    public float mScreenForY = Float.NaN;
+    public int mScreenGeneration;
   };
   
   class Shot extends Obj {
     public static final float MAX_RADIUS = 40.0f;
     public boolean mBounced = false;
 
+    // A shot's path is fixed at launch; mX, mY, mZ are its position
+    // mAge seconds after mLaunchTime, and (mDX, mDY, mDZ) is the launch
+    // velocity.
+    public float mLaunchX;
+    public float mLaunchY;
+    public float mLaunchZ;
+    public double mLaunchTime;
+    public float mAge = 0;
+
+    // Ages at which it bounces off y = 0 (infinite if it never does),
+    // and lands.
+    public float mBounceAge;
+    public float mLandAge;
+
     public Shot(float x, float y, float z, float dx, float dy, float dz) {
       mX = x;
       mY = y;
       mZ = z;
+      mLaunchX = x;
+      mLaunchY = y;
+      mLaunchZ = z;
       mDX = dx;
       mDY = dy;
       mDZ = dz;
     }
+
+    public double LandTime() {
+      return mLaunchTime + mLandAge;
+    }
   };
 
   enum TargetState {
@@ -216,6 +314,11 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
     public int mWalkedCount = 0;
     public int mEggsLaid = 0;
 
+    // Screen top and bottom of the hole, cached by TargetHoleDraw().
+    public float mHoleForRadius = Float.NaN;
+    public float mHoleTop;
+    public float mHoleBottom;
+
     TargetState mState;
 
     public Target(float x, float y, float dx, float dy, float maxRadius) {
@@ -254,6 +357,9 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
     ATTRACT,
     PLAYING,
     GAME_OVER,
+
+    // Endless stress test; see FlingersThread.SwarmUpdate().
+    SWARM,
   }
 
   enum ScorePhase {
@@ -299,6 +405,8 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
     public static final int TARGET_SPEED = 28; // > this speed means crash
     public static final double TARGET_WIDTH = 1.6; // width of target
 
+    private static final String LOG_TAG = "Flingers";
+
     /*
      * Member (state) fields
      */
@@ -317,40 +425,86 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
      */
     private int mCanvasWidth = 1;
 
+    // Surface pixels per view pixel; below 1 when rendering at reduced
+    // resolution.  Read by the render thread.
+    private volatile float mCanvasScaleX = 1;
+    private volatile float mCanvasScaleY = 1;
+
     /** Message handler used by thread to interact with TextView */
     private Handler mHandlerText;
     private Handler mHandlerScore;
 
     private Vibrator mVibrator;
 
+    // Vibration goes through mHaptics, off this thread.  Pulse types,
+    // and the least time between two vibrations of each, in ms:
+    private static final int HAPTIC_STRETCH = 0;
+    private static final int HAPTIC_BOUNCE = 1;
+    private static final int HAPTIC_HIT = 2;
+    private final long[] mHapticIntervals = { 40, 30, 20 };
+    private static final long HAPTICS_WINDOW_MILLIS = 10;
+    private HapticsDispatcher mHaptics;
+
+    // Sound effects, mixed on their own thread; see SoundMixer.
+    private static final int MIXER_VOICES = 8;
+    private static final int MIXER_BUFFER_FRAMES = 256;  // ~12ms
+    private SoundMixer mMixer = new SoundMixer(MIXER_VOICES, MIXER_BUFFER_FRAMES);
+    private int mSoundLand;
+    private int mSoundBounce;
+    private int mSoundHit;
+    private int mSoundBonus;
+
     /** Used to figure out elapsed time between frames */
     private long mLastTime;
 
-    private Paint mBlackPaint;
-    private Paint mWhitePaint;
-    private Paint mSkyPaint;
-    private Paint mGroundPaint;
-    private Paint mShadowPaint;
-    private Paint mHolePaint;
-    private Paint mScorePaint;
-
-    private Paint mLarvaPaint1;
-    private Paint mLarvaPaint2;
-    private Paint mFlyPaint1;
-    private Paint mFlyPaint2;
-    private Paint mShotPaint;
-
-    private Paint mAnchorPaint;
-    private Paint mBandPaint;
-
-    private Paint mFlowerStemPaint;
-    private Paint mFlowerPetalPaint;
+    private RenderPaint mBlackPaint;
+    private RenderPaint mWhitePaint;
+    private RenderPaint mSkyPaint;
+    private RenderPaint mGroundPaint;
+    private RenderPaint mShadowPaint;
+    private RenderPaint mHolePaint;
+    private RenderPaint mScorePaint;
+
+    private RenderPaint mLarvaPaint1;
+    private RenderPaint mLarvaPaint2;
+    private RenderPaint mFlyPaint1;
+    private RenderPaint mFlyPaint2;
+    private RenderPaint mShotPaint;
+
+    private RenderPaint mAnchorPaint;
+    private RenderPaint mAimPaint;
+    private RenderPaint mBandPaint;
+
+    private RenderPaint mFlowerStemPaint;
+    private RenderPaint mFlowerPetalPaint;
+    private RenderPaint mDustPaint;
+
+    // Particle effects.  Kinds, which pick the color:
+    private static final int PARTICLE_DIRT = 0;
+    private static final int PARTICLE_GOO = 1;
+    private static final int PARTICLE_PETAL = 2;
+    private static final int PARTICLE_DUST = 3;
+    private static final int PARTICLE_SPARK = 4;
+    private static final int PARTICLE_CAPACITY = 512;
+    private ParticleSystem mParticles = new ParticleSystem(PARTICLE_CAPACITY);
+    private RenderPaint[] mParticlePaints;
 
     /** The state of the game */
     private GameState mState = GameState.INVALID;
     private boolean mPaused = false;
-    private boolean mPausedDrawn = false;
+
+    // Set when what's on screen no longer matches the scene (overlay
+    // toggled, surface resized), so a paused loop records one frame.
+    // Cleared by RecordFrame().
+    private boolean mRedrawNeeded = true;
     private float mGameTimer = 0;
+
+    // Seconds of sim time since startup; never reset.  Double, so it
+    // stays precise over a long session.
+    private double mSimTime = 0;
+
+    // Sim time at the end of the current band substep.
+    private double mSpringTime = 0;
     private ScorePhase mScorePhase = ScorePhase.NONE;
     private int mScoreFlower = 0;
     private int mFlowerToMove = 0;
@@ -358,20 +512,80 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
     private int mLastBonusFlowerScore = 0;
 
     /** Indicate whether the surface has been created & is ready to draw */
-    private boolean mRun = false;
+    private volatile boolean mRun = false;
+
+    /**
+     * Frames recorded by this (simulation) thread and rasterized by
+     * mRenderThread.  The render thread only ever touches the front
+     * list, so it doesn't need mLock.
+     */
+    private FrameTripleBuffer mFrames =
+        new FrameTripleBuffer(new CanvasRenderSink());
+
+    private RenderThread mRenderThread;
 
-    /** Scratch rect object. */
-    private RectF mScratchRect;
+    // Asks the render thread to show its cached copy of the last frame
+    // again; see Redisplay().
+    private volatile boolean mRedisplayRequested = false;
+
+    // Format of that cached copy; matches the surface's.
+    private volatile Bitmap.Config mCacheConfig = Bitmap.Config.RGB_565;
 
     /** Handle to the surface manager object we interact with */
     private SurfaceHolder mSurfaceHolder;
 
+    // Call sites that take mLock, for its per-site stats.
+    private static final int LOCK_FRAME = 0;
+    private static final int LOCK_TOUCH = 1;
+    private static final int LOCK_KEY_DOWN = 2;
+    private static final int LOCK_KEY_UP = 3;
+    private static final int LOCK_SET_MESSAGE = 4;
+    private static final int LOCK_PAUSE = 5;
+    private static final int LOCK_UNPAUSE = 6;
+    private static final int LOCK_ABOUT = 7;
+    private static final int LOCK_SURFACE_SIZE = 8;
+    private static final int LOCK_SET_STATE = 9;
+    private static final int LOCK_RESET = 10;
+    private static final int LOCK_SAVE_STATE = 11;
+    private static final int LOCK_RESTORE_STATE = 12;
+    private static final int LOCK_SETTINGS = 13;
+
+    /**
+     * Guards the game state.  The simulation thread holds it for the
+     * whole of each frame's update and recording, and every entry
+     * point from the UI thread takes it too; ProfilerTick reports how
+     * long each site waited for it and held it.
+     */
+    private ProfiledLock mLock = new ProfiledLock(new String[] {
+      "frame", "touch", "key-down", "key-up", "set-message", "pause",
+      "unpause", "about", "surface-size", "set-state", "reset",
+      "save-state", "restore-state", "settings",
+    });
+
     /** active shots */
     private ArrayList<Shot> mShots = new ArrayList<Shot>();
 
+    // In-flight shots, soonest landing first.
+    private PriorityQueue<Shot> mShotLandings = new PriorityQueue<Shot>(16, new Comparator<Shot>() {
+        public int compare(Shot a, Shot b) {
+          return Double.compare(a.LandTime(), b.LandTime());
+        }
+      });
+
     /** active targets */
     private ArrayList<Target> mTargets = new ArrayList<Target>();
 
+    /**
+     * mTargets, split by TargetFamily() of their state, each in
+     * mTargets order.  TargetsUpdate and GameDraw run a kernel per
+     * bucket, so the state switches inside stay predictable.  Buckets
+     * are rebuilt after each update pass; new targets (always eggs)
+     * go straight into mTargetsLarva via TargetAdd().
+     */
+    private ArrayList<Target> mTargetsLarva = new ArrayList<Target>();
+    private ArrayList<Target> mTargetsGround = new ArrayList<Target>();
+    private ArrayList<Target> mTargetsFly = new ArrayList<Target>();
+
     /** active flowers */
     private ArrayList<Flower> mFlowers = new ArrayList<Flower>();
 
@@ -386,6 +600,13 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
     private int mSpringState = SPRING_RESTING;
     private int mScore = 0;
     private int mLevel = 1;
+    private LevelParams mLevelParams = LevelParams.ForLevel(1, TARGET_MUNCH_TIME);
+
+    /**
+     * Level definitions from res/values/tuning.xml, or null; levels past
+     * the end use the built-in tuning.
+     */
+    private final LevelParams[] mLevelTable;
 
     private static final float ANCHOR_HEIGHT = 150;
     private static final float ANCHOR_WIDTH = 400;
@@ -409,9 +630,11 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
     private static final float TARGET_BURROW_MAG = 30.0f;
 
     private static final float TARGET_FLY_SPEED = 800;
-    private static final float TARGET_FLY_FREQ = 30;  // radians/sec for flapping
 
     private static final float SHOT_DZ_FACTOR = 0.15f;
+
+    /** Largest GameUpdate subtick, in seconds. */
+    private static final float MAX_SUBTICK = 0.034f;
     private static final float GRAVITY = 250.0f;
 
     private static final float EGG_PREDELAY = 0.5f;
@@ -426,6 +649,12 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
     private float mAnchor1X;
     private float mAnchor1Y;
 
+    // Screen positions of the anchors; set by setSurfaceSize().
+    private float mAnchor0ScreenX;
+    private float mAnchor0ScreenY;
+    private float mAnchor1ScreenX;
+    private float mAnchor1ScreenY;
+
     private float mBand0Length = 100;
     private float mBand1Length = 100;
 
@@ -448,86 +677,131 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
       mContext = context;
 
       mVibrator = (Vibrator) context.getSystemService(context.VIBRATOR_SERVICE);
+      SoundsLoad();
 
       Resources res = context.getResources();
 
-      mBlackPaint = new Paint();
+      mBlackPaint = new RenderPaint();
       mBlackPaint.setAntiAlias(true);
       mBlackPaint.setARGB(255, 0, 0, 0);
 
-      mWhitePaint = new Paint();
+      mWhitePaint = new RenderPaint();
       mWhitePaint.setAntiAlias(true);
       mWhitePaint.setARGB(255, 255, 255, 255);
 
-      mSkyPaint = new Paint();
+      mSkyPaint = new RenderPaint();
       mSkyPaint.setARGB(255, 80, 80, 200);
 
-      mGroundPaint = new Paint();
+      mGroundPaint = new RenderPaint();
       mGroundPaint.setARGB(255, 180, 150, 100);
 
-      mShadowPaint = new Paint();
+      mShadowPaint = new RenderPaint();
       mShadowPaint.setAntiAlias(true);
       mShadowPaint.setARGB(255, 80, 70, 50);
 
-      mHolePaint = new Paint();
+      mHolePaint = new RenderPaint();
       mHolePaint.setAntiAlias(true);
       mHolePaint.setARGB(255, 50, 100, 50);
 
-      mScorePaint = new Paint();
+      mScorePaint = new RenderPaint();
       mHolePaint.setAntiAlias(true);
       mScorePaint.setARGB(200, 255, 200, 200);
       mScorePaint.setTextSize(20.0f);
 
-      mLarvaPaint1 = new Paint();
+      mLarvaPaint1 = new RenderPaint();
       mLarvaPaint1.setAntiAlias(true);
       mLarvaPaint1.setARGB(255, 0, 200, 0);
 
-      mLarvaPaint2 = new Paint();
+      mLarvaPaint2 = new RenderPaint();
       mLarvaPaint2.setAntiAlias(true);
       mLarvaPaint2.setARGB(255, 0, 255, 0);
 
-      mFlyPaint1 = new Paint();
+      mFlyPaint1 = new RenderPaint();
       mFlyPaint1.setAntiAlias(true);
       mFlyPaint1.setARGB(255, 0, 0, 0);
 
-      mFlyPaint2 = new Paint();
+      mFlyPaint2 = new RenderPaint();
       mFlyPaint2.setAntiAlias(true);
       mFlyPaint2.setARGB(255, 255, 255, 0);
 
-      mShotPaint = new Paint();
+      mShotPaint = new RenderPaint();
       mShotPaint.setAntiAlias(true);
       mShotPaint.setARGB(255, 0, 128, 0);
 
-      mAnchorPaint = new Paint();
+      mAimPaint = new RenderPaint();
+      mAimPaint.setAntiAlias(true);
+      mAimPaint.setARGB(128, 255, 255, 255);
+
+      mAnchorPaint = new RenderPaint();
       mAnchorPaint.setAntiAlias(true);
       mAnchorPaint.setARGB(255, 255, 80, 100);
 
-      mBandPaint = new Paint();
+      mBandPaint = new RenderPaint();
       mBandPaint.setAntiAlias(true);
-      mBandPaint.setStrokeCap(Paint.Cap.ROUND);
+      mBandPaint.setRoundCap(true);
       mBandPaint.setARGB(255, 255, 255, 100);
 
-      mFlowerStemPaint = new Paint();
+      mFlowerStemPaint = new RenderPaint();
       mFlowerStemPaint.setAntiAlias(true);
       mFlowerStemPaint.setARGB(255, 0, 200, 0);
 
-      mFlowerPetalPaint = new Paint();
+      mFlowerPetalPaint = new RenderPaint();
       mFlowerPetalPaint.setAntiAlias(true);
       mFlowerPetalPaint.setARGB(255, 200, 200, 0);
 
-      mScratchRect = new RectF(0, 0, 0, 0);
+      mDustPaint = new RenderPaint();
+      mDustPaint.setAntiAlias(true);
+      mDustPaint.setARGB(255, 150, 140, 120);
+
+      mAntiAliasedPaints = new RenderPaint[] {
+        mBlackPaint, mWhitePaint, mShadowPaint, mHolePaint, mLarvaPaint1, mLarvaPaint2,
+        mFlyPaint1, mFlyPaint2, mShotPaint, mAimPaint, mAnchorPaint, mBandPaint,
+        mFlowerStemPaint, mFlowerPetalPaint, mDustPaint,
+      };
+
+      // Indexed by PARTICLE_* kind.
+      mParticlePaints = new RenderPaint[] {
+        mShadowPaint, mLarvaPaint2, mFlowerPetalPaint, mDustPaint, mFlyPaint2,
+      };
+
+      mParallelTargetThreshold = res.getInteger(R.integer.parallel_target_threshold);
+      mLevelTable = LevelTableParse(res.getStringArray(R.array.level_definitions));
+
+      mTraceSim = mTrace.RegisterThread("sim");
+      mTraceRender = mTrace.RegisterThread("render");
+      mTraceUi = mTrace.RegisterThread("ui");
+      mProfiler.SetTrace(mTrace, mTraceSim, mTraceRender);
+      mTraceSubtick = mTrace.RegisterName("subtick");
+      mTraceStates = new int[GameState.values().length];
+      for (GameState state : GameState.values()) {
+        mTraceStates[state.ordinal()] = mTrace.RegisterName("state " + state);
+      }
+      mTraceScorePhases = new int[ScorePhase.values().length];
+      for (ScorePhase phase : ScorePhase.values()) {
+        mTraceScorePhases[phase.ordinal()] = mTrace.RegisterName("score " + phase);
+      }
+
+      mProfilerPaint = new RenderPaint();
+      mProfilerPaint.setARGB(255, 255, 255, 255);
+      mProfilerPaint.setTextSize(12.0f);
+
+      BakePoses();
     }
 
     private void GameReset() {
-      synchronized (mSurfaceHolder) {
+      mLock.Lock(LOCK_RESET);
+      try {
         mScore = 0;
         AddScore(0);
-        mLevel = 1;
+        GameSetLevel(1);
         mLastBonusFlowerScore = 0;
         GameInitLevel();
         SpringReset();
+        mParticles.Clear();
         
         mLastTime = System.currentTimeMillis() + 100;
+      } finally {
+        mLock.Unlock();
       }
     }
 
@@ -535,10 +809,12 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
      * Pauses the physics update & animation.
      */
     public void Pause() {
-      synchronized (mSurfaceHolder) {
+      mLock.Lock(LOCK_PAUSE);
+      try {
         mPaused = true;
-        mPausedDrawn = false;
         SetMessage("Paused -- Touch Screen To Resume");
+      } finally {
+        mLock.Unlock();
       }
     }
 
@@ -547,11 +823,13 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
      * text.
      */
     public void About() {
-      synchronized (mSurfaceHolder) {
+      mLock.Lock(LOCK_ABOUT);
+      try {
         mPaused = true;
-        mPausedDrawn = false;
         Resources res = mContext.getResources();
         SetMessage(res.getText(R.string.msg_about));
+      } finally {
+        mLock.Unlock();
       }
     }
 
@@ -563,32 +841,118 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
      * @param savedState Bundle containing the game state
      */
     public synchronized void restoreState(Bundle savedState) {
-      synchronized (mSurfaceHolder) {
+      mLock.Lock(LOCK_RESTORE_STATE);
+      try {
         GameSetState(GameState.INVALID);
+      } finally {
+        mLock.Unlock();
       }
     }
 
-    @Override
-    public void run() {
-      while (mRun) {
-        Canvas c = null;
+    /**
+     * Rasterizes the frames that FlingersThread records.  Runs as the
+     * second stage of the pipeline: while this thread draws frame N
+     * and waits in unlockCanvasAndPost, the simulation thread is
+     * already updating and recording frame N+1.
+     *
+     * It also keeps the last frame in an offscreen bitmap, for
+     * Redisplay().  The bitmap is only filled when first needed, by
+     * replaying the front list, so ordinary frames don't pay for it.
+     * Between requests the thread parks.
+     */
+    private class RenderThread extends Thread {
+      /** Draws into the Canvas locked by run(), or into mCache. */
+      private CanvasRenderSink mCanvasSink = new CanvasRenderSink();
+
+      private Bitmap mCache;
+      private Canvas mCacheCanvas;
+      private Bitmap.Config mCacheFormat;
+      // Whether mCache holds the front list's frame.
+      private boolean mCacheValid = false;
+      private boolean mHaveFrame = false;
+
+      @Override
+      public void run() {
         try {
-          c = mSurfaceHolder.lockCanvas(null);
-          synchronized (mSurfaceHolder) {
-            if (!mPaused) {
-              GameUpdate();
-              GameDraw(c);
-            } else {
-              if (!mPausedDrawn) {
-                GameDraw(c);
-                mPausedDrawn = true;
+          while (mRun) {
+            if (mFrames.Acquire()) {
+              // A back buffer just freed up; let the sim get going on it.
+              LockSupport.unpark(FlingersThread.this);
+              mHaveFrame = true;
+              mCacheValid = false;
+              Present(mFrames.GetFront());
+            } else if (mRedisplayRequested) {
+              mRedisplayRequested = false;
+              if (mHaveFrame) {
+                PresentCached(mFrames.GetFront());
               }
+            } else {
+              LockSupport.park(this);
             }
           }
+        } finally {
+          if (mCache != null) {
+            mCache.recycle();
+          }
+        }
+      }
+
+      private void Present(RenderCommandList frame) {
+        Canvas c = null;
+        try {
+          c = mSurfaceHolder.lockCanvas(null);
+          if (c != null) {
+            long t = System.nanoTime();
+            mCanvasSink.Begin(c, mCanvasScaleX, mCanvasScaleY);
+            frame.Replay(mCanvasSink);
+            mCanvasSink.End();
+            mProfiler.Mark(FrameProfiler.RASTER, t);
+          }
         } finally {
           // do this in a finally so that if an exception is thrown
           // during the above, we don't leave the Surface in an
           // inconsistent state
+          if (c != null) {
+            long t = System.nanoTime();
+            mSurfaceHolder.unlockCanvasAndPost(c);
+            long posted = mProfiler.Mark(FrameProfiler.POST, t);
+            if (frame.InputNanos() != 0) {
+              mInputLatency.Record(frame.InputNanos(), frame.RecordedNanos(), posted);
+            }
+          }
+        }
+        mProfiler.CommitFrame(FrameProfiler.FIRST_RENDER_PHASE,
+                              FrameProfiler.LAST_RENDER_PHASE);
+      }
+
+      // Shows frame from mCache, filling the cache first if it's stale.
+      private void PresentCached(RenderCommandList frame) {
+        Canvas c = null;
+        try {
+          c = mSurfaceHolder.lockCanvas(null);
+          if (c != null) {
+            int width = c.getWidth();
+            int height = c.getHeight();
+            Bitmap.Config format = mCacheConfig;
+            if (mCache == null || mCache.getWidth() != width
+                || mCache.getHeight() != height || mCacheFormat != format) {
+              if (mCache != null) {
+                mCache.recycle();
+              }
+              mCache = Bitmap.createBitmap(width, height, format);
+              mCacheCanvas = new Canvas(mCache);
+              mCacheFormat = format;
+              mCacheValid = false;
+            }
+            if (!mCacheValid) {
+              mCanvasSink.Begin(mCacheCanvas, mCanvasScaleX, mCanvasScaleY);
+              frame.Replay(mCanvasSink);
+              mCanvasSink.End();
+              mCacheValid = true;
+            }
+            c.drawBitmap(mCache, 0, 0, null);
+          }
+        } finally {
           if (c != null) {
             mSurfaceHolder.unlockCanvasAndPost(c);
           }
@@ -596,6 +960,354 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
       }
     }
 
+    private void RecordFrame(RenderCommandList frame) {
+      long t = System.nanoTime();
+      frame.Clear();
+      GrabFitFrame(SystemClock.uptimeMillis());
+      GameDraw(frame);
+      mRedrawNeeded = false;
+      long recorded = mProfiler.Mark(FrameProfiler.DRAW, t);
+
+      long input = EarliestNanos(mLatencyInputNanos, mLatencyCarryNanos);
+      frame.SetLatencyTag(input, recorded);
+      mLatencyInputNanos = 0;
+      mLatencyCarryNanos = 0;
+    }
+
+    // Input latency: the oldest input not yet in a recorded frame, and
+    // the tag of a recorded frame that was dropped before it was shown.
+    // Both are System.nanoTime() values, or 0 for none.
+    private InputLatency mInputLatency = new InputLatency();
+    private long mLatencyInputNanos = 0;
+    private long mLatencyCarryNanos = 0;
+
+    // The earlier of two latency tags, where 0 means none.
+    private long EarliestNanos(long a, long b) {
+      if (a == 0) {
+        return b;
+      }
+      if (b == 0) {
+        return a;
+      }
+      return Math.min(a, b);
+    }
+
+    /**
+     * Notes an input at eventMillis (a MotionEvent or KeyEvent time, on
+     * the SystemClock.uptimeMillis() clock), to be measured until the
+     * next recorded frame reaches the screen.
+     */
+    private void LatencyNoteInput(long eventMillis) {
+      long age = SystemClock.uptimeMillis() - eventMillis;
+      long nanos = System.nanoTime() - Math.max(0, age) * 1000000;
+      mLatencyInputNanos = EarliestNanos(mLatencyInputNanos, nanos);
+    }
+
+    private void AllocEndFrame() {
+      mAllocs.Pool(AllocTracker.POOL_CIRCLES, mNextCircle, mCirclePool.size());
+      mAllocs.Pool(AllocTracker.POOL_COORDS, mNextCoord, mCoords.size());
+      // All three lists, since each grows on its own.
+      mAllocs.Pool(AllocTracker.POOL_COMMANDS, mFrames.TotalSize(), mFrames.TotalCapacity());
+      mAllocs.EndFrame();
+    }
+
+    // Quality tiers, best first; each also has everything above it off.
+    private static final int QUALITY_NO_ANTI_ALIAS = 1;
+    private static final int QUALITY_LOD_BIAS = 2;
+    private static final int QUALITY_NO_SHADOWS = 3;
+    private static final int QUALITY_FEW_PARTICLES = 4;
+    private static final long QUALITY_BUDGET_NANOS = 1000L * 1000 * 1000 / 30;
+    private static final float QUALITY_LOD_Z_SCALE = 0.7f;
+
+    private QualityController mQuality = new QualityController(
+        new String[] { "full", "no-anti-alias", "lod-bias", "no-shadows", "few-particles" },
+        QUALITY_BUDGET_NANOS);
+    private long mQualityLastFrame = 0;
+    private RenderPaint[] mAntiAliasedPaints;
+    private boolean mDrawShadows = true;
+
+    /** Feeds the frame that began at frameStart to the quality controller. */
+    private void QualityTick(long frameStart) {
+      long interval = mQualityLastFrame == 0 ? 0 : frameStart - mQualityLastFrame;
+      mQualityLastFrame = frameStart;
+      if (mQuality.AddFrame(interval)) {
+        QualityApply(mQuality.Tier());
+        Log.i(LOG_TAG, "quality " + mQuality.TierName(mQuality.Tier())
+              + " after avg frame " + mQuality.ChangeAverageNanos() / 1000 + "us");
+      }
+    }
+
+    private void QualityApply(int tier) {
+      boolean antiAlias = tier < QUALITY_NO_ANTI_ALIAS;
+      for (int i = 0; i < mAntiAliasedPaints.length; i++) {
+        mAntiAliasedPaints[i].setAntiAlias(antiAlias);
+      }
+      mLodZScale = tier >= QUALITY_LOD_BIAS ? QUALITY_LOD_Z_SCALE : 1;
+      mDrawShadows = tier < QUALITY_NO_SHADOWS;
+      mParticles.SetBudget(tier >= QUALITY_FEW_PARTICLES
+                           ? PARTICLE_CAPACITY / 4 : PARTICLE_CAPACITY);
+    }
+
+    private static final String TRACE_FILE = "flingers-trace.json";
+    private static final String PROFILE_FILE = "flingers-profile.txt";
+
+    private static final long PROFILER_DUMP_INTERVAL_NANOS = 5000L * 1000 * 1000;
+    private long mProfilerLastDump = 0;
+    private boolean mProfilerOverlay = false;
+    private String[] mProfilerLines = new String[FrameProfiler.NUM_PHASES];
+    private File mProfilerFile;
+    private RenderPaint mProfilerPaint;
+
+    // The last ProfilerTick's report, written out by ProfilerFlush()
+    // once mLock is released.  Simulation thread only.
+    private ArrayList<String> mProfilerReport = new ArrayList<String>();
+    private int mProfilerReportWarnLine = -1;
+    private File mProfilerReportFile;
+
+    private boolean ProfilerEnabled() {
+      return mProfilerOverlay || mProfilerFile != null;
+    }
+
+    /**
+     * While the overlay or the profile file is on, every few seconds
+     * refreshes the overlay text, queues the per-phase frame timings
+     * and the other reports for ProfilerFlush(), and starts a fresh set
+     * of histograms.  Called with mLock held, so it only copies
+     * strings; the logging and file I/O happen after the lock is
+     * released.
+     */
+    private void ProfilerTick() {
+      if (!ProfilerEnabled()) {
+        mProfilerLastDump = 0;
+        return;
+      }
+      long now = System.nanoTime();
+      if (mProfilerLastDump == 0) {
+        // Just switched on; start the first window from here.
+        mProfilerLastDump = now;
+        ProfilerResetAll();
+        return;
+      }
+      if (now - mProfilerLastDump < PROFILER_DUMP_INTERVAL_NANOS) {
+        return;
+      }
+      mProfilerLastDump = now;
+
+      ArrayList<String> report = mProfilerReport;
+      report.clear();
+      mProfilerReportWarnLine = -1;
+      mProfilerReportFile = mProfilerFile;
+      for (int i = 0; i < FrameProfiler.NUM_PHASES; i++) {
+        mProfilerLines[i] = mProfiler.Report(i);
+        report.add(mProfilerLines[i]);
+      }
+      if (mAllocs.Enabled()) {
+        if (mAllocs.Violations() > 0) {
+          mProfilerReportWarnLine = report.size();
+        }
+        report.add(mAllocs.Report());
+      }
+      for (int i = 0; i < mLock.NumSites(); i++) {
+        String line = mLock.Report(i);
+        if (line != null) {
+          report.add(line);
+        }
+      }
+      report.add(mLock.ReportStalls());
+      if (mInputLatency.Count() > 0) {
+        report.add(mInputLatency.ReportToRecord());
+        report.add(mInputLatency.ReportToPost());
+      }
+      report.add(mHaptics.Report());
+      report.add(mMixer.Report());
+      report.add(mParticles.Report());
+      ProfilerResetAll();
+    }
+
+    private void ProfilerResetAll() {
+      if (mAllocs.Enabled()) {
+        mAllocs.Reset();
+      }
+      mLock.Reset();
+      mInputLatency.Reset();
+      mHaptics.Reset();
+      mMixer.Reset();
+      mParticles.Reset();
+      mProfiler.Reset();
+    }
+
+    /**
+     * Logs the report queued by ProfilerTick, if any, and appends it to
+     * the profile file.  Call without mLock held.
+     */
+    private void ProfilerFlush() {
+      ArrayList<String> report = mProfilerReport;
+      if (report.isEmpty()) {
+        return;
+      }
+      for (int i = 0; i < report.size(); i++) {
+        if (i == mProfilerReportWarnLine) {
+          Log.w(LOG_TAG, report.get(i));
+        } else {
+          Log.i(LOG_TAG, report.get(i));
+        }
+      }
+      File file = mProfilerReportFile;
+      if (file != null) {
+        FileWriter out = null;
+        try {
+          out = new FileWriter(file, true);
+          for (int i = 0; i < report.size(); i++) {
+            out.write(report.get(i));
+            out.write('\n');
+          }
+          out.write('\n');
+        } catch (IOException e) {
+          Log.w(LOG_TAG, "profile dump failed", e);
+          mLock.Lock(LOCK_SETTINGS);
+          try {
+            if (mProfilerFile == file) {
+              mProfilerFile = null;
+            }
+          } finally {
+            mLock.Unlock();
+          }
+        } finally {
+          if (out != null) {
+            try {
+              out.close();
+            } catch (IOException e) {
+            }
+          }
+        }
+      }
+      report.clear();
+    }
+
+    private void ProfilerDrawOverlay(RenderSink sink) {
+      // Start below the score text.
+      float y = 40 + mProfilerPaint.mTextSize;
+      for (int i = 0; i < mProfilerLines.length; i++) {
+        if (mProfilerLines[i] != null) {
+          sink.DrawText(mProfilerLines[i], 4, y, mProfilerPaint);
+          y += mProfilerPaint.mTextSize + 2;
+        }
+      }
+    }
+
+    /** Shows or hides the frame timing overlay. */
+    public void ToggleProfilerOverlay() {
+      mLock.Lock(LOCK_SETTINGS);
+      try {
+        mProfilerOverlay = !mProfilerOverlay;
+        RequestRedraw();
+      } finally {
+        mLock.Unlock();
+      }
+    }
+
+    /**
+     * Starts or stops appending the periodic frame timing dumps to
+     * flingers-profile.txt in the app's files directory.
+     */
+    public void ToggleProfileFile() {
+      mLock.Lock(LOCK_SETTINGS);
+      try {
+        if (mProfilerFile == null) {
+          mProfilerFile = mContext.getFileStreamPath(PROFILE_FILE);
+          Log.i(LOG_TAG, "profile dumps going to " + mProfilerFile);
+        } else {
+          mProfilerFile = null;
+          Log.i(LOG_TAG, "profile dumps to file stopped");
+        }
+      } finally {
+        mLock.Unlock();
+      }
+    }
+
+    @Override
+    public void run() {
+      mHaptics = new HapticsDispatcher(new HapticsDispatcher.Sink() {
+          public void Vibrate(long millis) {
+            mVibrator.vibrate(millis);
+          }
+        }, mHapticIntervals, HAPTICS_WINDOW_MILLIS);
+      mMixer.Start(new AudioTrackSink(MIXER_BUFFER_FRAMES));
+      mRenderThread = new RenderThread();
+      mRenderThread.start();
+      try {
+        while (mRun) {
+          // Stay at most one frame ahead of the renderer; there's no
+          // point recording frames that will just be dropped.
+          if (mFrames.HasUnconsumed()) {
+            LockSupport.park(this);
+            continue;
+          }
+
+          RenderCommandList frame = mFrames.GetBack();
+          boolean recorded = false;
+          long frameStart = System.nanoTime();
+          mLock.Lock(LOCK_FRAME);
+          try {
+            if (!mPaused) {
+              mAllocs.BeginMeasure();
+              long t = System.nanoTime();
+              GameUpdate();
+              mProfiler.Mark(FrameProfiler.UPDATE, t);
+              RecordFrame(frame);
+              mAllocs.EndMeasure();
+              SwarmLogFrame();
+              recorded = true;
+            } else if (mRedrawNeeded) {
+              RecordFrame(frame);
+              recorded = true;
+            }
+            if (recorded) {
+              mProfiler.Mark(FrameProfiler.FRAME, frameStart);
+              mProfiler.CommitFrame(FrameProfiler.FIRST_SIM_PHASE,
+                                    FrameProfiler.LAST_SIM_PHASE);
+              AllocEndFrame();
+              ProfilerTick();
+              if (!mPaused) {
+                QualityTick(frameStart);
+              }
+            }
+          } finally {
+            mLock.Unlock();
+          }
+
+          if (recorded) {
+            if (mFrames.Publish()) {
+              // The render thread never saw the frame we just replaced,
+              // so its input first shows in the next one.
+              mLatencyCarryNanos = mFrames.GetBack().InputNanos();
+            }
+            LockSupport.unpark(mRenderThread);
+            ProfilerFlush();
+          } else {
+            // Paused, and the screen is up to date.  Sleep until
+            // Unpause(), RequestRedraw() or setRunning(false).
+            LockSupport.park(this);
+          }
+        }
+      } finally {
+        if (mTargetWorkers != null) {
+          mTargetWorkers.Shutdown();
+        }
+        mHaptics.Shutdown();
+        mMixer.Shutdown();
+        LockSupport.unpark(mRenderThread);
+        boolean retry = true;
+        while (retry) {
+          try {
+            mRenderThread.join();
+            retry = false;
+          } catch (InterruptedException e) {
+          }
+        }
+      }
+    }
+
     /**
      * Dump game state to the provided Bundle. Typically called when the
      * Activity is being suspended.
@@ -603,10 +1315,13 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
      * @return Bundle with this view's state
      */
     public Bundle saveState(Bundle map) {
-      synchronized (mSurfaceHolder) {
+      mLock.Lock(LOCK_SAVE_STATE);
+      try {
         if (map != null) {
           // TODO
         }
+      } finally {
+        mLock.Unlock();
       }
       return map;
     }
@@ -621,11 +1336,19 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
      */
     public void setRunning(boolean b) {
       mRun = b;
+      if (!b) {
+        // Wake both pipeline stages so they notice.
+        LockSupport.unpark(this);
+        if (mRenderThread != null) {
+          LockSupport.unpark(mRenderThread);
+        }
+      }
     }
 
     public void ShowMessage(String id, CharSequence message) {
       Handler h = id == "text" ? mHandlerText : mHandlerScore;
       Message msg = h.obtainMessage();
+      mAllocs.Count(AllocTracker.MESSAGE);
       Bundle b = new Bundle();
       b.putString("text", message.toString());
       b.putInt("viz", View.VISIBLE);
@@ -634,7 +1357,8 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
     }
 
     public void SetMessage(CharSequence message) {
-      synchronized (mSurfaceHolder) {
+      mLock.Lock(LOCK_SET_MESSAGE);
+      try {
         /*
          * Since the View that actually renders that text is part of the
          * main View hierarchy and not owned by this thread, we can't
@@ -645,6 +1369,7 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
         Resources res = mContext.getResources();
 
         Message msg = mHandlerText.obtainMessage();
+        mAllocs.Count(AllocTracker.MESSAGE);
         Bundle b = new Bundle();
         b.putString("text", message.toString());
         if (message.length() > 0) {
@@ -654,12 +1379,15 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
         }
         msg.setData(b);
         mHandlerText.sendMessage(msg);
+      } finally {
+        mLock.Unlock();
       }
     }
 
     private void GameInitLevel() {
       // Create bugs.
       mTargets.clear();
+      TargetsRebucket();
       for (int i = 0; i < 5; i++) {
         Target t = TargetCreate();
         if (t != null) {
@@ -676,8 +1404,55 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
       }
     }
 
+    private int mTraceSim;
+    private int mTraceRender;
+    private int mTraceUi;
+    private int mTraceSubtick;
+    private int[] mTraceStates;
+    private int[] mTraceScorePhases;
+
+    // Trace thread id for whoever is calling.
+    private int TraceTid() {
+      if (Thread.currentThread() == this) {
+        return mTraceSim;
+      } else if (Thread.currentThread() == mRenderThread) {
+        return mTraceRender;
+      }
+      return mTraceUi;
+    }
+
+    /**
+     * Writes the trace ring to flingers-trace.json in the app's files
+     * directory, as Chrome trace-event JSON.
+     */
+    public void DumpTrace() {
+      Writer out = null;
+      try {
+        out = new OutputStreamWriter(
+            mContext.openFileOutput(TRACE_FILE, Context.MODE_PRIVATE));
+        mTrace.Dump(out);
+        Log.i(LOG_TAG, "trace written to " + mContext.getFileStreamPath(TRACE_FILE));
+      } catch (IOException e) {
+        Log.w(LOG_TAG, "trace dump failed", e);
+      } finally {
+        if (out != null) {
+          try {
+            out.close();
+          } catch (IOException e) {
+          }
+        }
+      }
+    }
+
+    private void GameSetScorePhase(ScorePhase phase) {
+      mScorePhase = phase;
+      mTrace.Instant(mTraceScorePhases[phase.ordinal()], TraceTid());
+    }
+
     public void GameSetState(GameState state) {
-      synchronized (mSurfaceHolder) {
+      mLock.Lock(LOCK_SET_STATE);
+      try {
+        mTrace.Instant(mTraceStates[state.ordinal()], TraceTid());
         GameState previousState = mState;
         mState = state;
         mGameTimer = 0;
@@ -698,18 +1473,37 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
             break;
           case GAME_OVER:
             SetMessage("Game Over");
-            SpringRelease();
+            SpringRelease(SystemClock.uptimeMillis());
+            break;
+          case SWARM:
+            GameReset();
+            SetMessage("");
+            mSwarmShotTimer = 0;
+            mSwarmLastFrameNanos = 0;
+            mSwarmFrames = 0;
+            mSwarmFrameNanos = 0;
+            mSwarmMaxFrameNanos = 0;
             break;
         }
+      } finally {
+        mLock.Unlock();
       }
     }
 
-    /* Callback invoked when the surface dimensions change. */
-    public void setSurfaceSize(int width, int height) {
-      // synchronized to make sure these all change atomically
-      synchronized (mSurfaceHolder) {
+    /**
+     * Callback invoked when the surface dimensions change.  The game
+     * works in view coordinates, width by height; the surface may be
+     * smaller (see FlingersView.setRenderScale()), in which case frames
+     * are drawn scaled by (scaleX, scaleY).
+     */
+    public void setSurfaceSize(int width, int height, float scaleX, float scaleY) {
+      // locked to make sure these all change atomically
+      mLock.Lock(LOCK_SURFACE_SIZE);
+      try {
         mCanvasWidth = width;
         mCanvasHeight = height;
+        mCanvasScaleX = scaleX;
+        mCanvasScaleY = scaleY;
 
         float midx = width / 2;
         mAnchor0X = -ANCHOR_WIDTH / 2;
@@ -717,6 +1511,15 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
         mAnchor0Y = ANCHOR_HEIGHT;
         mAnchor1Y = mAnchor0Y;
 
+        // Invalidates every cached screen position.
+        mProjectionGeneration++;
+        Coord a = Project(mAnchor0X, mAnchor0Y, 0);
+        mAnchor0ScreenX = a.x;
+        mAnchor0ScreenY = a.y;
+        a = Project(mAnchor1X, mAnchor1Y, 0);
+        mAnchor1ScreenX = a.x;
+        mAnchor1ScreenY = a.y;
+
         mTouchHeight = Project(mAnchor0X, mAnchor0Y + 50, 0).y;
         mHorizonHeight = Project(0, 10000, 0).y;
 
@@ -724,19 +1527,52 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
         mTargetMaxX = (float) Math.abs(Unproject(0, maxTargetScreenY).x);
 
         SpringReset();
+        RequestRedraw();
+      } finally {
+        mLock.Unlock();
+      }
+    }
+
+    /** Callback invoked when the surface's pixel format changes. */
+    public void setSurfaceFormat(int format) {
+      mCacheConfig = format == PixelFormat.RGB_565
+          ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+    }
+
+    /**
+     * Shows the last frame again, e.g. after a dialog or menu covered
+     * the surface.  Cheap: the render thread blits a cached copy
+     * rather than redrawing the scene.
+     */
+    public void Redisplay() {
+      mRedisplayRequested = true;
+      RenderThread r = mRenderThread;
+      if (r != null) {
+        LockSupport.unpark(r);
       }
     }
 
+    // Has the sim thread record a new frame even if paused.  Call with
+    // mLock held.
+    private void RequestRedraw() {
+      mRedrawNeeded = true;
+      LockSupport.unpark(this);
+    }
+
     /**
      * Resumes from a pause.
      */
     public void Unpause() {
       // Move the real time clock up to now
-      synchronized (mSurfaceHolder) {
+      mLock.Lock(LOCK_UNPAUSE);
+      try {
         mLastTime = System.currentTimeMillis() + 100;
         SetMessage("");
         mPaused = false;
+      } finally {
+        mLock.Unlock();
       }
+      LockSupport.unpark(this);
     }
 
     boolean DoStartGameInput() {
@@ -751,7 +1587,8 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
     }
 
     boolean doTouch(MotionEvent event) {
-      synchronized (mSurfaceHolder) {
+      mLock.Lock(LOCK_TOUCH);
+      try {
         float x = event.getX();
         float y = event.getY();
 
@@ -760,18 +1597,28 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
             Unpause();
             return true;
           }
+          long time = event.getEventTime();
+          LatencyNoteInput(event.getHistorySize() > 0
+                           ? event.getHistoricalEventTime(0) : time);
           switch (event.getAction()) {
             case MotionEvent.ACTION_DOWN:
+              mTouchTracker.Clear();
               SpringHold(x, y);
-              FlingerMove(x, y);
+              FlingerMove(x, y, time);
               break;
             case MotionEvent.ACTION_MOVE:
-              FlingerMove(x, y);
+              // Moves come batched; feed the tracker the in-between
+              // samples too, for a better velocity.
+              for (int i = 0; i < event.getHistorySize(); i++) {
+                FlingerMove(event.getHistoricalX(i), event.getHistoricalY(i),
+                            event.getHistoricalEventTime(i));
+              }
+              FlingerMove(x, y, time);
               break;
             case MotionEvent.ACTION_UP:
             case MotionEvent.ACTION_CANCEL:
-              FlingerMove(x, y);
-              SpringRelease();
+              FlingerMove(x, y, time);
+              SpringRelease(time);
               break;
           }
           return true;
@@ -780,6 +1627,8 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
         }
 
         return false;
+      } finally {
+        mLock.Unlock();
       }
     }
       
@@ -791,12 +1640,24 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
      * @return true
      */
     boolean doKeyDown(int keyCode, KeyEvent msg) {
-      synchronized (mSurfaceHolder) {
+      if (keyCode == KeyEvent.KEYCODE_T) {
+        // Outside the lock; the dump can take a while.
+        DumpTrace();
+        return true;
+      }
+
+      mLock.Lock(LOCK_KEY_DOWN);
+      try {
         boolean okStart = false;
         if (keyCode == KeyEvent.KEYCODE_DPAD_UP) okStart = true;
         if (keyCode == KeyEvent.KEYCODE_DPAD_DOWN) okStart = true;
         if (keyCode == KeyEvent.KEYCODE_S) okStart = true;
 
+        if (keyCode == KeyEvent.KEYCODE_P) {
+          ToggleProfilerOverlay();
+          return true;
+        }
+
         boolean center = (keyCode == KeyEvent.KEYCODE_DPAD_UP);
 
         if (mState == GameState.PLAYING) {
@@ -812,6 +1673,8 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
         }
 
         return false;
+      } finally {
+        mLock.Unlock();
       }
     }
 
@@ -825,29 +1688,37 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
     boolean doKeyUp(int keyCode, KeyEvent msg) {
       boolean handled = false;
 
-      synchronized (mSurfaceHolder) {
+      mLock.Lock(LOCK_KEY_UP);
+      try {
+      } finally {
+        mLock.Unlock();
       }
 
       return handled;
     }
 
-    private void ShotDraw(Canvas canvas, float x, float y, float worldY, float radius) {
+    private void ShotDraw(RenderSink sink, float x, float y, float worldY, float radius) {
       AddCircle(x, y, worldY, radius, mShotPaint);
     }
 
-    private void ShotDrawShadow(Canvas canvas, float x, float y, float zscale, float radius) {
-      mScratchRect.set(x - radius * zscale, y, x + radius * zscale, y + radius * zscale * 1.2f);
-      canvas.drawOval(mScratchRect, mShadowPaint);
+    private void ShotDrawShadow(RenderSink sink, float x, float y, float zscale, float radius) {
+      sink.DrawOval(x - radius * zscale, y, x + radius * zscale, y + radius * zscale * 1.2f,
+                    mShadowPaint);
     }
 
-    private void TargetHoleDraw(Canvas canvas, float x, float y, float radius) {
-      Coord top = Project(x, y + radius, 0);
-      Coord bottom = Project(x, y - radius, 0);
-      Coord left = Project(x - radius, y, 0);
-      Coord right = Project(x + radius, y, 0);
-
-      mScratchRect.set(left.x, top.y, right.x, bottom.y);
-      canvas.drawOval(mScratchRect, mHolePaint);
+    private void TargetHoleDraw(RenderSink sink, Target t, float radius) {
+      if (radius <= 0) {
+        // Nothing to see.
+        return;
+      }
+      if (ProjectScreen(t) || radius != t.mHoleForRadius) {
+        t.mHoleTop = Project(t.mX, t.mY + radius, 0).y;
+        t.mHoleBottom = Project(t.mX, t.mY - radius, 0).y;
+        t.mHoleForRadius = radius;
+      }
+      float halfWidth = radius * t.mScreenZ;
+      sink.DrawOval(t.mScreenX - halfWidth, t.mHoleTop,
+                    t.mScreenX + halfWidth, t.mHoleBottom, mHolePaint);
     }
 
     private static final float TARGET_HEAD_RADIUS = 80.0f;
@@ -867,53 +1738,216 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
     private static final float TARGET_HEAD_FLY_OFFSET = 20.0f;
     private static final float TARGET_TAIL_FLY_HEIGHT = -60.0f;
     private static final float TARGET_TAIL_FLY_OFFSET = -50.0f;
-    
 
-    private void TargetHeadDraw(Canvas canvas, float x, float y, float z) {
-      Coord c = Project(x, y, z);
-      AddCircle(c.x, c.y, y, c.z * TARGET_HEAD_RADIUS, mLarvaPaint1);
+    // Level-of-detail tiers, keyed on the projection scale c.z.
+    // Far-away bugs and flowers are only a few pixels across, so they
+    // collapse down to one or two primitives.
+    private static final int LOD_FULL = 0;
+    private static final int LOD_REDUCED = 1;
+    private static final int LOD_MINIMAL = 2;
+    private static final float LOD_REDUCED_Z = 0.085f;  // y ~= 1060
+    private static final float LOD_MINIMAL_Z = 0.060f;  // y ~= 1550
+    private static final float LOD_HYSTERESIS = 0.004f;
+
+    // Scales z before picking a tier; below 1 biases toward coarser
+    // tiers.  Set by the quality controller.
+    private float mLodZScale = 1;
+
+    // Max number of body circles the current target may emit; set
+    // from its LOD tier by TargetDrawBegin().
+    private int mTargetLodBudget = 3;
+
+    /**
+     * Moves o to the LOD tier for projection scale z, and returns the
+     * new tier.  A tier change only happens once z is clearly past the
+     * boundary, so entities sitting near a boundary don't pop.
+     */
+    private int LodUpdate(Obj o, float z) {
+      z *= mLodZScale;
+      int lod = o.mLod;
+      if (lod < LOD_REDUCED && z < LOD_REDUCED_Z - LOD_HYSTERESIS) {
+        lod = LOD_REDUCED;
+      }
+      if (lod < LOD_MINIMAL && z < LOD_MINIMAL_Z - LOD_HYSTERESIS) {
+        lod = LOD_MINIMAL;
+      }
+      if (lod > LOD_REDUCED && z > LOD_MINIMAL_Z + LOD_HYSTERESIS) {
+        lod = LOD_REDUCED;
+      }
+      if (lod > LOD_FULL && z > LOD_REDUCED_Z + LOD_HYSTERESIS) {
+        lod = LOD_FULL;
+      }
+      o.mLod = lod;
+      return lod;
+    }
+
+    // Returns true if the current target may emit another body
+    // circle, and uses up one from its LOD budget.
+    private boolean TargetLodTake() {
+      if (mTargetLodBudget <= 0) {
+        return false;
+      }
+      mTargetLodBudget--;
+      return true;
     }
 
-    private void TargetBodyDraw(Canvas canvas, float x, float y, float z) {
-      Coord c = Project(x, y, z);
-      AddCircle(c.x, c.y, y, c.z * TARGET_BODY_RADIUS, mLarvaPaint2);
+
+    private void TargetHeadDraw(RenderSink sink, float x, float y, float z) {
+      if (!TargetLodTake()) {
+        return;
+      }
+      BatchCircle(x, y, z, TARGET_HEAD_RADIUS, mLarvaPaint1);
+    }
+
+    private void TargetBodyDraw(RenderSink sink, float x, float y, float z) {
+      if (!TargetLodTake()) {
+        return;
+      }
+      BatchCircle(x, y, z, TARGET_BODY_RADIUS, mLarvaPaint2);
     }
     
-    private void TargetTailDraw(Canvas canvas, float x, float y, float z) {
-      Coord c = Project(x, y, z);
-      AddCircle(c.x, c.y, y, c.z * TARGET_TAIL_RADIUS, mLarvaPaint1);
+    private void TargetTailDraw(RenderSink sink, float x, float y, float z) {
+      if (!TargetLodTake()) {
+        return;
+      }
+      BatchCircle(x, y, z, TARGET_TAIL_RADIUS, mLarvaPaint1);
     }
     
-    private void TargetHeadDrawFly(Canvas canvas, float x, float y, float z) {
-      Coord c = Project(x, y, z);
-      AddCircle(c.x, c.y, y, c.z * TARGET_HEAD_RADIUS, mFlyPaint1);
+    private void TargetHeadDrawFly(RenderSink sink, float x, float y, float z) {
+      if (!TargetLodTake()) {
+        return;
+      }
+      BatchCircle(x, y, z, TARGET_HEAD_RADIUS, mFlyPaint1);
     }
     
-    private void TargetBodyDrawFly(Canvas canvas, float x, float y, float z) {
-      Coord c = Project(x, y, z);
-      AddCircle(c.x, c.y, y, c.z * TARGET_BODY_RADIUS, mFlyPaint2);
+    private void TargetBodyDrawFly(RenderSink sink, float x, float y, float z) {
+      if (!TargetLodTake()) {
+        return;
+      }
+      BatchCircle(x, y, z, TARGET_BODY_RADIUS, mFlyPaint2);
     }
     
-    private void TargetTailDrawFly(Canvas canvas, float x, float y, float z) {
-      Coord c = Project(x, y, z);
-      AddCircle(c.x, c.y, y, c.z * TARGET_TAIL_RADIUS, mFlyPaint1);
+    private void TargetTailDrawFly(RenderSink sink, float x, float y, float z) {
+      if (!TargetLodTake()) {
+        return;
+      }
+      BatchCircle(x, y, z, TARGET_TAIL_RADIUS, mFlyPaint1);
     }
     
-    private void TargetDraw(Canvas canvas, Target t) {
-      TargetHoleDraw(canvas, t.mX, t.mY, TargetGetHoleRadius(t));
+    private static final float TWO_PI = (float) (2 * Math.PI);
+
+    // Keys per period in the pose tables.
+    private static final int POSE_KEYS = 128;
+
+    // mWalkPose channels: offset and height factors per body part,
+    // over one stride.
+    private static final int WALK_HEAD_H = 0;
+    private static final int WALK_HEAD_V = 1;
+    private static final int WALK_BODY_H = 2;
+    private static final int WALK_BODY_V = 3;
+    private static final int WALK_TAIL_H = 4;
+
+    // mBurrowPose channels: wiggle height factors, over one wiggle.
+    private static final int BURROW_TAIL_V = 0;
+    private static final int BURROW_BODY_V = 1;
+
+    // mUnitCircle channels, over one turn.
+    private static final int CIRCLE_SIN = 0;
+    private static final int CIRCLE_COS = 1;
+
+    private KeyframeTable mWalkPose;
+    private KeyframeTable mBurrowPose;
+    private KeyframeTable mUnitCircle;
+
+    // Samples the periodic pose curves, so TargetDraw doesn't need any
+    // trig.
+    private void BakePoses() {
+      mWalkPose = new KeyframeTable(5, POSE_KEYS);
+      mWalkPose.Bake(WALK_HEAD_H, new KeyframeTable.Curve() {
+          public float Eval(float u) {
+            return 1 + WalkSin(u) * 0.50f;
+          }
+        });
+      mWalkPose.Bake(WALK_HEAD_V, new KeyframeTable.Curve() {
+          public float Eval(float u) {
+            return 1 + WalkSin(u) * 0.2f;
+          }
+        });
+      mWalkPose.Bake(WALK_BODY_H, new KeyframeTable.Curve() {
+          public float Eval(float u) {
+            return (float) Math.sin(u * TWO_PI + Math.PI / 2) * 0.3f;
+          }
+        });
+      mWalkPose.Bake(WALK_BODY_V, new KeyframeTable.Curve() {
+          public float Eval(float u) {
+            return 1 - WalkSin(u);
+          }
+        });
+      mWalkPose.Bake(WALK_TAIL_H, new KeyframeTable.Curve() {
+          public float Eval(float u) {
+            return 1 + WalkSin(u) * 0.50f;
+          }
+        });
 
-      float headX = 0;
-      float headY = 0;
-      float headZ = 0;
-      float tailX = 0;
-      float tailY = 0;
-      float tailZ = 0;
+      mBurrowPose = new KeyframeTable(2, POSE_KEYS);
+      mBurrowPose.Bake(BURROW_TAIL_V, new KeyframeTable.Curve() {
+          public float Eval(float u) {
+            float sin0 = (float) Math.sin(u * TWO_PI);
+            return 1 + (float) Math.sin(sin0 + Math.PI / 2) * 0.5f;
+          }
+        });
+      mBurrowPose.Bake(BURROW_BODY_V, new KeyframeTable.Curve() {
+          public float Eval(float u) {
+            float sin0 = (float) Math.sin(u * TWO_PI);
+            return 1 + (float) Math.sin(sin0) * 0.5f;
+          }
+        });
+
+      mUnitCircle = new KeyframeTable(2, POSE_KEYS);
+      mUnitCircle.Bake(CIRCLE_SIN, new KeyframeTable.Curve() {
+          public float Eval(float u) {
+            return (float) Math.sin(u * TWO_PI);
+          }
+        });
+      mUnitCircle.Bake(CIRCLE_COS, new KeyframeTable.Curve() {
+          public float Eval(float u) {
+            return (float) Math.cos(u * TWO_PI);
+          }
+        });
+    }
+
+    // The walk cycle's main oscillation; the stride starts at its
+    // midpoint, heading down.
+    private float WalkSin(float u) {
+      return (float) Math.sin(u * TWO_PI + Math.PI);
+    }
+
+    // Common start of the TargetDraw kernels: the hole, and the LOD
+    // budget for the body parts.
+    private void TargetDrawBegin(RenderSink sink, Target t) {
+      TargetHoleDraw(sink, t, TargetGetHoleRadius(t));
+
+      switch (LodUpdate(t, ZSCALE / (t.mY + ZOFFSET))) {
+        default:
+        case LOD_FULL:
+          mTargetLodBudget = 3;
+          break;
+        case LOD_REDUCED:
+          mTargetLodBudget = 2;
+          break;
+        case LOD_MINIMAL:
+          mTargetLodBudget = 1;
+          break;
+      }
+    }
 
+    /** TargetDraw kernel for the TARGET_LARVA family. */
+    private void TargetDrawLarva(RenderSink sink, Target t) {
+      TargetDrawBegin(sink, t);
       switch (t.mState) {
         case EGG: {
           // Show a little nubbin above ground.
-          Coord c = Project(t.mX, t.mY, 0);
-          AddCircle(c.x, c.y, t.mY, 10.0f * c.z, mWhitePaint);
+          BatchCircle(t.mX, t.mY, 0, 10.0f, mWhitePaint);
           break;
         }
 
@@ -932,45 +1966,45 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
             f = MakeLerper(t.mTimer, 0, TARGET_RISE_TIME);
           }
           float z = t.mZ + (f - 1) * TARGET_RISE_HEIGHT;
-          TargetHeadDraw(canvas, t.mX, t.mY, z + TARGET_RISE_HEAD_HEIGHT);
+          TargetHeadDraw(sink, t.mX, t.mY, z + TARGET_RISE_HEAD_HEIGHT);
           if (f > 0.5f) {
-            TargetBodyDraw(canvas, t.mX, t.mY, z);
+            TargetBodyDraw(sink, t.mX, t.mY, z);
           }
           break;
         }
 
         case LOOK_DWELL_BEFORE_DROP: {
           float z = t.mZ;
-          TargetBodyDraw(canvas, t.mX, t.mY, z);
-          TargetHeadDraw(canvas, t.mX, t.mY, z + TARGET_RISE_HEAD_HEIGHT);
+          TargetBodyDraw(sink, t.mX, t.mY, z);
+          TargetHeadDraw(sink, t.mX, t.mY, z + TARGET_RISE_HEAD_HEIGHT);
           break;
         }
+      }
+    }
 
+    /** TargetDraw kernel for the TARGET_GROUND family. */
+    private void TargetDrawGround(RenderSink sink, Target t) {
+      TargetDrawBegin(sink, t);
+      switch (t.mState) {
         case WALK: {
-          float freq = TARGET_WALK_FREQ * GameWalkSpeedFactor();
-          float sin0 = Sinf(t.mTimer * freq + (float) Math.PI);
-          float sin1 = Sinf(t.mTimer * freq + (float) Math.PI / 2);
-          float sin2 = Sinf(t.mTimer * freq + (float) Math.PI);
-
-          float rise = sin0;
+          float u = t.mTimer * TARGET_WALK_FREQ * mLevelParams.mWalkSpeedFactor / TWO_PI;
 
-          float hfactor = 1 + sin0 * 0.50f;
-          float vfactor = 1 + sin0 * 0.2f;
-          TargetHeadDraw(canvas,
+          float hfactor = mWalkPose.SampleWrapped(WALK_HEAD_H, u);
+          float vfactor = mWalkPose.SampleWrapped(WALK_HEAD_V, u);
+          TargetHeadDraw(sink,
                          t.mX + t.mDirX * TARGET_WALK_HEAD_OFFSET * hfactor,
                          t.mY + t.mDirY * TARGET_WALK_HEAD_OFFSET * hfactor,
                          t.mZ + TARGET_HEAD_RADIUS + TARGET_WALK_HEAD_HEIGHT * vfactor);
 
-          hfactor = sin1 * 0.3f;
-          vfactor = (1 - rise);
-          TargetBodyDraw(canvas,
+          hfactor = mWalkPose.SampleWrapped(WALK_BODY_H, u);
+          vfactor = mWalkPose.SampleWrapped(WALK_BODY_V, u);
+          TargetBodyDraw(sink,
                          t.mX + t.mDirX * TARGET_WALK_BODY_OFFSET * hfactor,
                          t.mY + t.mDirY * TARGET_WALK_BODY_OFFSET * hfactor,
                          t.mZ + TARGET_BODY_RADIUS + TARGET_WALK_BODY_HEIGHT * vfactor);
 
-          hfactor = 1 + sin2 * 0.50f;
-          vfactor = 0 + sin2 * 0.1f;
-          TargetTailDraw(canvas,
+          hfactor = mWalkPose.SampleWrapped(WALK_TAIL_H, u);
+          TargetTailDraw(sink,
                          t.mX - t.mDirX * TARGET_WALK_TAIL_OFFSET * hfactor,
                          t.mY - t.mDirY * TARGET_WALK_TAIL_OFFSET * hfactor,
                          t.mZ + TARGET_TAIL_RADIUS);
@@ -979,29 +2013,29 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
 
         case BURROW: {
           float f = MakeLerper(t.mTimer, 0, TARGET_BURROW_TIME);
-          float sin0 = Sinf(t.mTimer * TARGET_BURROW_FREQ);
+          float u = t.mTimer * TARGET_BURROW_FREQ / TWO_PI;
           float z = t.mZ + 1.5f * TARGET_BURROW_OFFSET * (1 - f);
-          float voffset = 1 + Sinf(sin0 + (float) Math.PI / 2) * 0.5f;
+          float voffset = mBurrowPose.SampleWrapped(BURROW_TAIL_V, u);
           if (z > -50.0f) {
-            TargetTailDraw(canvas, t.mX, t.mY, z + TARGET_BURROW_MAG * voffset);
+            TargetTailDraw(sink, t.mX, t.mY, z + TARGET_BURROW_MAG * voffset);
           }
 
           z -= TARGET_BURROW_OFFSET;
-          voffset = 1 + Sinf(sin0) * 0.5f;
+          voffset = mBurrowPose.SampleWrapped(BURROW_BODY_V, u);
           if (z > -50.0f) {
-            TargetBodyDraw(canvas, t.mX, t.mY, z + TARGET_BURROW_MAG * voffset);
+            TargetBodyDraw(sink, t.mX, t.mY, z + TARGET_BURROW_MAG * voffset);
           }
           break;
         }
 
         case MUNCH: {
           // Spiral around the flower, then pause, then devour it.
-          final float munchTime = GameTargetMunchTime();
-          final float pauseTime = GameMunchPauseTime();
+          final float munchTime = mLevelParams.mMunchTime;
+          final float pauseTime = mLevelParams.mMunchPauseTime;
           final float SINK_TIME = 0.50f;
           final float RISE_TIME = munchTime - pauseTime
                                   - SINK_TIME;
-          final float TARGET_MUNCH_FREQ = 16 * GameWalkSpeedFactor();
+          final float TARGET_MUNCH_FREQ = 16 * mLevelParams.mWalkSpeedFactor;
           final float WRIGGLE_MAG = 60.0f;
           final float RISE_HEIGHT_HEAD = 220.0f;
           final float RISE_HEIGHT_BODY = 300.0f;
@@ -1018,34 +2052,36 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
             float bodyF = Clamp(f + 0.10f, 0, 0.90f);
             float tailF = f;
 
-            TargetTailDraw(canvas,
-                           t.mX + Sinf(tailF * TARGET_MUNCH_FREQ) * WRIGGLE_MAG,
-                           t.mY + Cosf(tailF * TARGET_MUNCH_FREQ) * WRIGGLE_MAG,
+            // Turns around the spiral.
+            final float turns = TARGET_MUNCH_FREQ / TWO_PI;
+            TargetTailDraw(sink,
+                           t.mX + mUnitCircle.SampleWrapped(CIRCLE_SIN, tailF * turns) * WRIGGLE_MAG,
+                           t.mY + mUnitCircle.SampleWrapped(CIRCLE_COS, tailF * turns) * WRIGGLE_MAG,
                            t.mZ + tailF * RISE_HEIGHT_TAIL);
-            TargetBodyDraw(canvas,
-                           t.mX + Sinf(bodyF * TARGET_MUNCH_FREQ) * WRIGGLE_MAG,
-                           t.mY + Cosf(bodyF * TARGET_MUNCH_FREQ) * WRIGGLE_MAG,
+            TargetBodyDraw(sink,
+                           t.mX + mUnitCircle.SampleWrapped(CIRCLE_SIN, bodyF * turns) * WRIGGLE_MAG,
+                           t.mY + mUnitCircle.SampleWrapped(CIRCLE_COS, bodyF * turns) * WRIGGLE_MAG,
                            t.mZ + bodyF * RISE_HEIGHT_TAIL);
-            TargetHeadDraw(canvas,
-                           t.mX + Sinf(headF * TARGET_MUNCH_FREQ) * WRIGGLE_MAG,
-                           t.mY + Cosf(headF * TARGET_MUNCH_FREQ) * WRIGGLE_MAG,
+            TargetHeadDraw(sink,
+                           t.mX + mUnitCircle.SampleWrapped(CIRCLE_SIN, headF * turns) * WRIGGLE_MAG,
+                           t.mY + mUnitCircle.SampleWrapped(CIRCLE_COS, headF * turns) * WRIGGLE_MAG,
                            t.mZ + headF * RISE_HEIGHT_TAIL);
           } else if (t.mTimer <= RISE_TIME + pauseTime) {
             // Just pause, waiting to munch!
-            TargetTailDraw(canvas, t.mX, t.mY, t.mZ + RISE_HEIGHT_TAIL);
-            TargetBodyDraw(canvas, t.mX, t.mY, t.mZ + RISE_HEIGHT_BODY);
-            TargetHeadDraw(canvas, t.mX, t.mY, t.mZ + RISE_HEIGHT_HEAD);
+            TargetTailDraw(sink, t.mX, t.mY, t.mZ + RISE_HEIGHT_TAIL);
+            TargetBodyDraw(sink, t.mX, t.mY, t.mZ + RISE_HEIGHT_BODY);
+            TargetHeadDraw(sink, t.mX, t.mY, t.mZ + RISE_HEIGHT_HEAD);
           } else {
             // Devour!
             float f = MakeLerper(t.mTimer, munchTime,
                                  munchTime - SINK_TIME);
-            TargetTailDraw(canvas, t.mX, t.mY,
+            TargetTailDraw(sink, t.mX, t.mY,
                            t.mZ + Lerp(f, END_DEVOUR_HEIGHT, RISE_HEIGHT_HEAD) +
                            DELTA_TAIL);
-            TargetBodyDraw(canvas, t.mX, t.mY,
+            TargetBodyDraw(sink, t.mX, t.mY,
                            t.mZ + Lerp(f, END_DEVOUR_HEIGHT, RISE_HEIGHT_HEAD) +
                            DELTA_BODY);
-            TargetHeadDraw(canvas, t.mX, t.mY,
+            TargetHeadDraw(sink, t.mX, t.mY,
                            t.mZ + Lerp(f, END_DEVOUR_HEIGHT, RISE_HEIGHT_HEAD));
           }
           break;
@@ -1053,77 +2089,76 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
 
         case SHRIVEL: {
           float f = MakeLerper(t.mTimer, TARGET_SHRIVEL_TIME, 0);
-          Coord c = Project(t.mX, t.mY, t.mZ + TARGET_RISE_HEAD_HEIGHT * f);
-          AddCircle(c.x, c.y, t.mY, c.z * TARGET_HEAD_RADIUS * f, mLarvaPaint1);
-          c = Project(t.mX, t.mY, t.mZ);
-          AddCircle(c.x, c.y, t.mY, c.z * TARGET_BODY_RADIUS * f, mLarvaPaint2);
-          c = Project(t.mX, t.mY, t.mZ - TARGET_RISE_HEAD_HEIGHT * f);
-          AddCircle(c.x, c.y, t.mY, c.z * TARGET_TAIL_RADIUS * f, mLarvaPaint1);
+          if (TargetLodTake()) {
+            BatchCircle(t.mX, t.mY, t.mZ + TARGET_RISE_HEAD_HEIGHT * f,
+                        TARGET_HEAD_RADIUS * f, mLarvaPaint1);
+          }
+          if (TargetLodTake()) {
+            BatchCircle(t.mX, t.mY, t.mZ, TARGET_BODY_RADIUS * f, mLarvaPaint2);
+          }
+          if (TargetLodTake()) {
+            BatchCircle(t.mX, t.mY, t.mZ - TARGET_RISE_HEAD_HEIGHT * f,
+                        TARGET_TAIL_RADIUS * f, mLarvaPaint1);
+          }
           break;
         }
 
         case PUPATE: {
           // Show a little nubbin above ground.
-          Coord c = Project(t.mX, t.mY, 0);
-          AddCircle(c.x, c.y, t.mY, 10.0f * c.z, mBlackPaint);
+          BatchCircle(t.mX, t.mY, 0, 10.0f, mBlackPaint);
           break;
         }
+      }
+    }
 
-        case FLY_RISE:
-        case FLY:
-        case FLY_LAY_EGG:
-        case FLY_ESCAPE: {
-          float sin0 = Sinf(t.mTimer * TARGET_FLY_FREQ);
-          float z = TARGET_FLY_HEIGHT;
-          float dirx = t.mDirX;
-          float diry = t.mDirY;
-          if (t.mState == TargetState.FLY_RISE) {
-            z = Lerp(MakeLerper(t.mTimer, 0, TARGET_FLY_RISE_TIME), -1, 1) * TARGET_FLY_HEIGHT;
-            dirx = 0;
-            diry = -1;
-          }
-          if (t.mState == TargetState.FLY_LAY_EGG) {
-            dirx = 0;
-            diry = -1;
-          }
+    /** TargetDraw kernel for the TARGET_FLY family. */
+    private void TargetDrawFly(RenderSink sink, Target t) {
+      TargetDrawBegin(sink, t);
+      float z = TARGET_FLY_HEIGHT;
+      float dirx = t.mDirX;
+      float diry = t.mDirY;
+      if (t.mState == TargetState.FLY_RISE) {
+        z = Lerp(MakeLerper(t.mTimer, 0, TARGET_FLY_RISE_TIME), -1, 1) * TARGET_FLY_HEIGHT;
+        dirx = 0;
+        diry = -1;
+      }
+      if (t.mState == TargetState.FLY_LAY_EGG) {
+        dirx = 0;
+        diry = -1;
+      }
 
-          z += TARGET_HEAD_FLY_HEIGHT;
-          if (z > -50.0f) {
-            TargetHeadDrawFly(canvas,
-                              t.mX + dirx * TARGET_HEAD_FLY_OFFSET,
-                              t.mY + diry * TARGET_HEAD_FLY_OFFSET,
-                              z);
-          }
+      z += TARGET_HEAD_FLY_HEIGHT;
+      if (z > -50.0f) {
+        TargetHeadDrawFly(sink,
+                          t.mX + dirx * TARGET_HEAD_FLY_OFFSET,
+                          t.mY + diry * TARGET_HEAD_FLY_OFFSET,
+                          z);
+      }
 
-          // body
-          z -= TARGET_HEAD_FLY_HEIGHT;
-          if (z > -50.0f) {
-            TargetBodyDrawFly(canvas, t.mX, t.mY, z);
-          }
+      // body
+      z -= TARGET_HEAD_FLY_HEIGHT;
+      if (z > -50.0f) {
+        TargetBodyDrawFly(sink, t.mX, t.mY, z);
+      }
 
-          // wings
-          // TODO
+      // wings
+      // TODO
 
-          // tail
-          z += TARGET_TAIL_FLY_HEIGHT;
-          if (z > -50.0f) {
-            TargetTailDrawFly(canvas,
-                              t.mX + dirx * TARGET_TAIL_FLY_OFFSET,
-                              t.mY + diry * TARGET_TAIL_FLY_OFFSET,
-                              z);
-          }
-
-          if (t.mState == TargetState.FLY_LAY_EGG) {
-            float f = MakeLerper(
-                t.mTimer, TARGET_LAY_EGG_TIME - 0.25f, TARGET_LAY_EGG_TIME);
-            if (f > 0) {
-              float h = Lerp(f, TARGET_FLY_HEIGHT + TARGET_TAIL_FLY_OFFSET - TARGET_TAIL_RADIUS, 0);
-              Coord c = Project(t.mX, t.mY, h);
-              AddCircle(c.x, c.y, t.mY, TARGET_EGG_RADIUS * c.z, mWhitePaint);
-            }
-          }
-          
-          break;
+      // tail
+      z += TARGET_TAIL_FLY_HEIGHT;
+      if (z > -50.0f) {
+        TargetTailDrawFly(sink,
+                          t.mX + dirx * TARGET_TAIL_FLY_OFFSET,
+                          t.mY + diry * TARGET_TAIL_FLY_OFFSET,
+                          z);
+      }
+
+      if (t.mState == TargetState.FLY_LAY_EGG) {
+        float f = MakeLerper(
+            t.mTimer, TARGET_LAY_EGG_TIME - 0.25f, TARGET_LAY_EGG_TIME);
+        if (f > 0) {
+          float h = Lerp(f, TARGET_FLY_HEIGHT + TARGET_TAIL_FLY_OFFSET - TARGET_TAIL_RADIUS, 0);
+          BatchCircle(t.mX, t.mY, h, TARGET_EGG_RADIUS, mWhitePaint);
         }
       }
     }
@@ -1134,7 +2169,7 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
     public static final float FLOWER_CENTER_RADIUS = 30.0f;
     public static final float FLOWER_PETAL_RADIUS = 30.0f;
     
-    private void FlowerDraw(Canvas canvas, Flower f) {
+    private void FlowerDraw(RenderSink sink, Flower f) {
       float stemT = 0;
       if (f.mState == FlowerState.SEED) {
         // No stem.
@@ -1147,46 +2182,67 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
       }
 
       float leafT = MakeLerper(stemT, 0.5f, 1.0f);
-      
+
+      // Far-away flowers skip the leaves, and collapse the bloom into
+      // a single disc.
+      int lod = LodUpdate(f, ZSCALE / (f.mY + ZOFFSET));
+      boolean blooming = (f.mState == FlowerState.BLOOM);
+      if (lod != LOD_FULL) {
+        leafT = 0;
+      }
+
+      // Flowers never move, so every point here is an offset from the
+      // cached screen position of the base.
+      ProjectScreen(f);
+      float s = f.mScreenZ;
+
       // Draw stem.
       float h = FLOWER_HEIGHT * stemT;
-      Coord head = Project(f.mX, f.mY, f.mZ + h);
+      float headX = f.mScreenX;
+      float headY = f.mScreenY - (f.mZ + h) * s;
       if (stemT > 0) {
-        Coord c0 = Project(f.mX, f.mY, f.mZ);
-        canvas.drawLine(c0.x, c0.y, head.x, head.y, mFlowerStemPaint);
+        sink.DrawLine(f.mScreenX, f.mScreenY - f.mZ * s, headX, headY, mFlowerStemPaint);
       }
 
       // Leaves.
       if (leafT > 0) {
-        float off = FLOWER_LEAF_OFFSET * leafT;
+        float off = FLOWER_LEAF_OFFSET * leafT * s;
         float r = FLOWER_LEAF_RADIUS * leafT;
-        Coord c2 = Project(f.mX + off, f.mY, f.mZ + h / 2);
-        Coord c3 = Project(f.mX - off, f.mY, f.mZ + h / 2);
-        AddCircle(c2.x, c2.y, f.mY, r * c2.z, mFlowerStemPaint);
-        AddCircle(c3.x, c3.y, f.mY, r * c3.z, mFlowerStemPaint);
+        float leafY = f.mScreenY - (f.mZ + h / 2) * s;
+        AddCircle(headX + off, leafY, f.mY, r * s, mFlowerStemPaint);
+        AddCircle(headX - off, leafY, f.mY, r * s, mFlowerStemPaint);
       }
 
       // Bud.
-      {
-        float centerR = FLOWER_CENTER_RADIUS * stemT * head.z;
-        AddCircle(head.x, head.y, f.mY, centerR, mFlowerStemPaint);
+      if (lod == LOD_FULL || !blooming) {
+        float centerR = FLOWER_CENTER_RADIUS * stemT * s;
+        AddCircle(headX, headY, f.mY, centerR, mFlowerStemPaint);
       }
 
       // Bloom.
-      if (f.mState == FlowerState.BLOOM) {
+      if (blooming && lod != LOD_FULL) {
+        float t = MakeLerper(f.mTimer, 0, 0.5f);
+        float offsetR = (FLOWER_PETAL_RADIUS + FLOWER_CENTER_RADIUS) * t * s;
+        float petalR = FLOWER_PETAL_RADIUS * t * s;
+        AddCircle(headX, headY, f.mY, offsetR + petalR * 0.5f, mFlowerPetalPaint);
+        if (lod == LOD_REDUCED) {
+          float centerR = FLOWER_CENTER_RADIUS * t * s;
+          AddCircle(headX, headY, f.mY, centerR, mBlackPaint);
+        }
+      } else if (blooming) {
         float t = MakeLerper(f.mTimer, 0, 0.5f);
 
-        float centerR = FLOWER_CENTER_RADIUS * t * head.z;
-        float offsetR = (FLOWER_PETAL_RADIUS + FLOWER_CENTER_RADIUS) * t * head.z;
-        float petalR = FLOWER_PETAL_RADIUS * t * head.z;
-
-        AddCircle(head.x, head.y, f.mY, centerR, mBlackPaint);
-        AddCircle(head.x - offsetR, head.y, f.mY, petalR, mFlowerPetalPaint);
-        AddCircle(head.x + offsetR, head.y, f.mY, petalR, mFlowerPetalPaint);
-        AddCircle(head.x - offsetR * 0.5f, head.y - offsetR * 0.707f, f.mY, petalR, mFlowerPetalPaint);
-        AddCircle(head.x + offsetR * 0.5f, head.y - offsetR * 0.707f, f.mY, petalR, mFlowerPetalPaint);
-        AddCircle(head.x - offsetR * 0.5f, head.y + offsetR * 0.707f, f.mY, petalR, mFlowerPetalPaint);
-        AddCircle(head.x + offsetR * 0.5f, head.y + offsetR * 0.707f, f.mY, petalR, mFlowerPetalPaint);
+        float centerR = FLOWER_CENTER_RADIUS * t * s;
+        float offsetR = (FLOWER_PETAL_RADIUS + FLOWER_CENTER_RADIUS) * t * s;
+        float petalR = FLOWER_PETAL_RADIUS * t * s;
+
+        AddCircle(headX, headY, f.mY, centerR, mBlackPaint);
+        AddCircle(headX - offsetR, headY, f.mY, petalR, mFlowerPetalPaint);
+        AddCircle(headX + offsetR, headY, f.mY, petalR, mFlowerPetalPaint);
+        AddCircle(headX - offsetR * 0.5f, headY - offsetR * 0.707f, f.mY, petalR, mFlowerPetalPaint);
+        AddCircle(headX + offsetR * 0.5f, headY - offsetR * 0.707f, f.mY, petalR, mFlowerPetalPaint);
+        AddCircle(headX - offsetR * 0.5f, headY + offsetR * 0.707f, f.mY, petalR, mFlowerPetalPaint);
+        AddCircle(headX + offsetR * 0.5f, headY + offsetR * 0.707f, f.mY, petalR, mFlowerPetalPaint);
       }
 
       // Seed.
@@ -1195,7 +2251,7 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
     /**
      * Draws the game state to the provided canvas.
      */
-    private void GameDraw(Canvas canvas) {
+    private void GameDraw(RenderSink sink) {
       if (mState == GameState.INVALID) {
         return;
       }
@@ -1204,9 +2260,9 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
       DisplayListClear();
 
       // Background.
-      //canvas.drawRect(0, 0, mCanvasWidth, mCanvasHeight, mBlackPaint);
-      canvas.drawRect(0, 0, mCanvasWidth, mHorizonHeight, mSkyPaint);
-      canvas.drawRect(0, mHorizonHeight, mCanvasWidth, mCanvasHeight, mGroundPaint);
+      //sink.DrawRect(0, 0, mCanvasWidth, mCanvasHeight, mBlackPaint);
+      sink.DrawRect(0, 0, mCanvasWidth, mHorizonHeight, mSkyPaint);
+      sink.DrawRect(0, mHorizonHeight, mCanvasWidth, mCanvasHeight, mGroundPaint);
 
       // Debug: show playfield outline.
       if (false) {
@@ -1217,41 +2273,61 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
         Coord c2 = Project(mTargetMaxX, TARGET_MAX_Y, 0);
         Coord c3 = Project(-mTargetMaxX, TARGET_MAX_Y, 0);
         
-        canvas.drawLine(c0.x, c0.y, c1.x, c1.y, mBlackPaint);
-        canvas.drawLine(c1.x, c1.y, c2.x, c2.y, mBlackPaint);
-        canvas.drawLine(c2.x, c2.y, c3.x, c3.y, mBlackPaint);
-        canvas.drawLine(c3.x, c3.y, c0.x, c0.y, mBlackPaint);
+        sink.DrawLine(c0.x, c0.y, c1.x, c1.y, mBlackPaint);
+        sink.DrawLine(c1.x, c1.y, c2.x, c2.y, mBlackPaint);
+        sink.DrawLine(c2.x, c2.y, c3.x, c3.y, mBlackPaint);
+        sink.DrawLine(c3.x, c3.y, c0.x, c0.y, mBlackPaint);
       }
 
-      // Draw the targets.
-      for (int i = 0; i < mTargets.size(); i++) {
-        Target t = mTargets.get(i);
-        TargetDraw(canvas, t);
+      // Draw the targets, a state family at a time.
+      for (int i = 0; i < mTargetsLarva.size(); i++) {
+        TargetDrawLarva(sink, mTargetsLarva.get(i));
+      }
+      for (int i = 0; i < mTargetsGround.size(); i++) {
+        TargetDrawGround(sink, mTargetsGround.get(i));
       }
+      for (int i = 0; i < mTargetsFly.size(); i++) {
+        TargetDrawFly(sink, mTargetsFly.get(i));
+      }
+      ParticlesDraw();
+      BatchFlush();
       
       // Draw the flowers.
       for (int i = 0; i < mFlowers.size(); i++) {
         Flower f = mFlowers.get(i);
-        FlowerDraw(canvas, f);
+        FlowerDraw(sink, f);
       }
       
-      // Draw the shot shadows.
-      for (int i = 0; i < mShots.size(); i++) {
+      // Project the shots' ground points in one batch; each shot is
+      // then that point lifted by its height.
+      int shots = mShots.size();
+      BatchReserve(shots);
+      for (int i = 0; i < shots; i++) {
         Shot s = mShots.get(i);
-        Coord c = Project(s.mX, s.mY, 0);
-        ShotDrawShadow(canvas, c.x, c.y, c.z, s.MAX_RADIUS);
+        mBatchWorldX[i] = s.mX;
+        mBatchWorldY[i] = s.mY;
+        mBatchWorldZ[i] = 0;
+      }
+      ProjectBatch(mBatchWorldX, mBatchWorldY, mBatchWorldZ, shots,
+                   mBatchScreenX, mBatchScreenY, mBatchScreenZ);
+
+      // Draw the shot shadows.
+      for (int i = 0; mDrawShadows && i < shots; i++) {
+        ShotDrawShadow(sink, mBatchScreenX[i], mBatchScreenY[i], mBatchScreenZ[i],
+                       Shot.MAX_RADIUS);
       }
       
-      FlingerDraw(canvas);
+      AimPreviewDraw(sink);
+      FlingerDraw(sink);
 
       // Draw the shots.
-      for (int i = 0; i < mShots.size(); i++) {
+      for (int i = 0; i < shots; i++) {
         Shot s = mShots.get(i);
-        Coord c = Project(s.mX, s.mY, s.mZ);
-        ShotDraw(canvas, c.x, c.y, s.mY, c.z * s.MAX_RADIUS);
+        float z = mBatchScreenZ[i];
+        ShotDraw(sink, mBatchScreenX[i], mBatchScreenY[i] - s.mZ * z, s.mY, z * s.MAX_RADIUS);
       }
 
-      DisplayListDraw(canvas);
+      DisplayListDraw(sink);
 
       if (mState == GameState.PLAYING) {
         if (mScorePhase == ScorePhase.SCORE_FLOWERS) {
@@ -1260,13 +2336,18 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
             int amount = GameScoreFlowerAmount(mScoreFlower);
             if (f != null) {
               Coord c = Project(f.mX, f.mY, f.mZ + FLOWER_HEIGHT * 2.5f);
+              mAllocs.Count(AllocTracker.DRAW_TEXT);
               String msg = String.format("%d", amount);
-              float width = mScorePaint.measureText(msg, 0, msg.length());
-              canvas.drawText(msg, 0, msg.length(), c.x - width / 2, c.y, mScorePaint);
+              float width = sink.MeasureText(msg, mScorePaint);
+              sink.DrawText(msg, c.x - width / 2, c.y, mScorePaint);
             }
           }
         }
       }
+
+      if (mProfilerOverlay) {
+        ProfilerDrawOverlay(sink);
+      }
     }
 
     class Coord {
@@ -1299,7 +2380,98 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
     private static final float ZSCALE = 100;
     private static final float ZOFFSET = 120;
 
-    // Playfield x,y,z to screen x,y,z
+    /**
+     * Batch form of Project(): maps n playfield points in x, y, z to
+     * screen points in outX, outY, outZ.  The arithmetic is exactly
+     * Project()'s, so results match it bit for bit; with the per-frame
+     * values hoisted and no object writes, the loop is a straight run
+     * of float math over arrays that the JIT can unroll and vectorize.
+     */
+    private void ProjectBatch(float[] x, float[] y, float[] z, int n,
+                              float[] outX, float[] outY, float[] outZ) {
+      float halfWidth = mCanvasWidth / 2;
+      float H = mCanvasHeight + YOFFSET;
+      for (int i = 0; i < n; i++) {
+        float s = ZSCALE / (y[i] + ZOFFSET);
+        outX[i] = x[i] * s + halfWidth;
+        outY[i] = (H - y[i] * s * YSCALE) - z[i] * s;
+        outZ[i] = s;
+      }
+    }
+
+    // Scratch for ProjectBatch(), and the circles queued by
+    // BatchCircle().  Grown as needed, never shrunk.
+    private float[] mBatchWorldX = new float[64];
+    private float[] mBatchWorldY = new float[64];
+    private float[] mBatchWorldZ = new float[64];
+    private float[] mBatchScreenX = new float[64];
+    private float[] mBatchScreenY = new float[64];
+    private float[] mBatchScreenZ = new float[64];
+    private float[] mBatchRadius = new float[64];
+    private RenderPaint[] mBatchPaint = new RenderPaint[64];
+    private int mBatchCount = 0;
+
+    private float[] GrowFloats(float[] a, int n) {
+      float[] b = new float[n];
+      System.arraycopy(a, 0, b, 0, a.length);
+      return b;
+    }
+
+    // Makes room for n points in the batch arrays.
+    private void BatchReserve(int n) {
+      if (n <= mBatchWorldX.length) {
+        return;
+      }
+      mAllocs.Count(AllocTracker.BATCH);
+      int size = Math.max(n, mBatchWorldX.length * 2);
+      mBatchWorldX = GrowFloats(mBatchWorldX, size);
+      mBatchWorldY = GrowFloats(mBatchWorldY, size);
+      mBatchWorldZ = GrowFloats(mBatchWorldZ, size);
+      mBatchScreenX = GrowFloats(mBatchScreenX, size);
+      mBatchScreenY = GrowFloats(mBatchScreenY, size);
+      mBatchScreenZ = GrowFloats(mBatchScreenZ, size);
+      mBatchRadius = GrowFloats(mBatchRadius, size);
+      RenderPaint[] paints = new RenderPaint[size];
+      System.arraycopy(mBatchPaint, 0, paints, 0, mBatchPaint.length);
+      mBatchPaint = paints;
+    }
+
+    /**
+     * Queues a circle at playfield x, y, z with playfield radius; it
+     * is projected and added to the display list by BatchFlush().
+     */
+    private void BatchCircle(float x, float y, float z, float radius, RenderPaint paint) {
+      BatchReserve(mBatchCount + 1);
+      int i = mBatchCount++;
+      mBatchWorldX[i] = x;
+      mBatchWorldY[i] = y;
+      mBatchWorldZ[i] = z;
+      mBatchRadius[i] = radius;
+      mBatchPaint[i] = paint;
+    }
+
+    // Queues every particle into the circle batch.
+    private void ParticlesDraw() {
+      ParticleSystem p = mParticles;
+      for (int i = 0; i < p.Count(); i++) {
+        BatchCircle(p.X(i), p.Y(i), p.Z(i), p.Size(i), mParticlePaints[p.Kind(i)]);
+      }
+    }
+
+    private void BatchFlush() {
+      int n = mBatchCount;
+      ProjectBatch(mBatchWorldX, mBatchWorldY, mBatchWorldZ, n,
+                   mBatchScreenX, mBatchScreenY, mBatchScreenZ);
+      for (int i = 0; i < n; i++) {
+        AddCircle(mBatchScreenX[i], mBatchScreenY[i], mBatchWorldY[i],
+                  mBatchScreenZ[i] * mBatchRadius[i], mBatchPaint[i]);
+        mBatchPaint[i] = null;
+      }
+      mBatchCount = 0;
+    }
+
+    // Playfield x,y,z to screen x,y,z.  ProjectBatch() must stay in
+    // step with this.
     private Coord Project(float x, float y, float z) {
       Coord c = NextCoord();
       c.z = ZSCALE / (y + ZOFFSET);
@@ -1309,6 +2481,28 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
       return c;
     }
 
+    /** Bumped whenever Project()'s mapping changes. */
+    private int mProjectionGeneration = 0;
+
+    /**
+     * Brings o's cached screen position up to date.  Returns true if it
+     * had to be recomputed.
+     */
+    private boolean ProjectScreen(Obj o) {
+      if (o.mScreenForX == o.mX && o.mScreenForY == o.mY
+          && o.mScreenGeneration == mProjectionGeneration) {
+        return false;
+      }
+      Coord c = Project(o.mX, o.mY, 0);
+      o.mScreenX = c.x;
+      o.mScreenY = c.y;
+      o.mScreenZ = c.z;
+      o.mScreenForX = o.mX;
+      o.mScreenForY = o.mY;
+      o.mScreenGeneration = mProjectionGeneration;
+      return true;
+    }
+
     // Screen x,y to playfield x,y,0
     private Coord Unproject(float x, float y) {
       Coord c = NextCoord();
@@ -1324,14 +2518,6 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
       return c;
     }
 
-    private float Sinf(float f) {
-      return (float) Math.sin(f);
-    }
-    
-    private float Cosf(float f) {
-      return (float) Math.cos(f);
-    }
-    
     private float Distance(float x0, float y0, float x1, float y1) {
       float dx = x1 - x0;
       float dy = y1 - y0;
@@ -1359,10 +2545,12 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
       while (mScore >= mLastBonusFlowerScore + BONUS_FLOWER_INTERVAL) {
         // Award a bonus flower.
         mLastBonusFlowerScore += BONUS_FLOWER_INTERVAL;
-        FlowerCreate();
-        // TODO: sounds etc.
+        Flower f = FlowerCreate();
+        mParticles.Emit(16, PARTICLE_SPARK, f.mX, f.mY, FLOWER_HEIGHT, 60, 200, 0.8f, 6);
+        mMixer.Play(mSoundBonus, 1.0f);
       }
 
+      mAllocs.Count(AllocTracker.SCORE_TEXT);
       ShowMessage("score", String.format(" %d", mScore));
     }
 
@@ -1383,7 +2571,7 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
       }
     }
 
-    private void FlingerMove(float sx, float sy) {
+    private void FlingerMove(float sx, float sy, long timeMillis) {
       sy = Math.max(mTouchHeight, sy);
       Coord c = Unproject(sx, sy - SPRING_HOTSPOT_SETBACK);
       if (c == null) {
@@ -1392,31 +2580,127 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
       if (mSpringState == SPRING_HELD) {
         mHeadX = c.x;
         mHeadY = c.y;
+        mTouchTracker.Add(timeMillis, c.x, c.y);
         SpringComputeHeadLocation();
       }
     }
 
+    /**
+     * How much of a fitted grab velocity (vx, vy) the head carries into
+     * a release: none if it points away from the anchors (a head flung
+     * backward would slow at once and fire a dud), else enough to cap
+     * it at GRAB_MAX_SPEED.
+     */
+    private float GrabVelocityScale(float vx, float vy) {
+      float towardX = (mAnchor0X + mAnchor1X) / 2 - mHeadX;
+      float towardY = (mAnchor0Y + mAnchor1Y) / 2 - mHeadY;
+      if (vx * towardX + vy * towardY <= 0) {
+        return 0;
+      }
+      float speed = Distance(0, 0, vx, vy);
+      return Math.min(1, GRAB_MAX_SPEED / speed);
+    }
+
+    /**
+     * Fits the grab motion once for the frame about to be recorded,
+     * into the mFrame* fields.  Drawing reads those; it never refits or
+     * changes the spring.
+     */
+    private void GrabFitFrame(long nowMillis) {
+      mFrameGrabVelX = 0;
+      mFrameGrabVelY = 0;
+      mFrameFitValid = mSpringState == SPRING_HELD
+          && mTouchTracker.Fit(nowMillis, TOUCH_FIT_MILLIS);
+      if (!mFrameFitValid) {
+        return;
+      }
+      mFramePredictX = mTouchTracker.PredictX(TOUCH_PREDICT_MILLIS);
+      mFramePredictY = mTouchTracker.PredictY(TOUCH_PREDICT_MILLIS);
+      float vx = mTouchTracker.VelocityX();
+      float vy = mTouchTracker.VelocityY();
+      float scale = GrabVelocityScale(vx, vy);
+      mFrameGrabVelX = vx * scale;
+      mFrameGrabVelY = vy * scale;
+    }
+
     private void SpringComputeHeadLocation() {
       mBand0Length = Distance(mAnchor0X, mAnchor0Y, mHeadX, mHeadY);
       mBand1Length = Distance(mAnchor1X, mAnchor1Y, mHeadX, mHeadY);
     }
 
-    private void SpringRelease() {
+    private void SpringRelease(long timeMillis) {
       if (mSpringState == SPRING_HELD) {
+        mHeadVelX = 0;
+        mHeadVelY = 0;
         if (Math.max(mBand0Length, mBand1Length) > BAND_RELEASE_LENGTH) {
           mSpringState = SPRING_RELEASED;
+          // A flick adds to the band's pull.
+          if (mTouchTracker.Fit(timeMillis, TOUCH_FIT_MILLIS)) {
+            float vx = mTouchTracker.VelocityX();
+            float vy = mTouchTracker.VelocityY();
+            float scale = GrabVelocityScale(vx, vy);
+            mHeadVelX = vx * scale;
+            mHeadVelY = vy * scale;
+          }
         } else {
           // Don't shoot.
           mSpringState = SPRING_RESTING;
         }
-        // TODO: might be fun to actually track grabber motion &
-        // compute vel.
-        mHeadVelX = 0;
-        mHeadVelY = 0;
       }
     }
 
+    // Grab tracking: samples kept, how far back the velocity fit
+    // looks, and the fastest flick carried into a release.
+    private static final int TOUCH_SAMPLES = 16;
+    private static final long TOUCH_FIT_MILLIS = 80;
+    private static final float GRAB_MAX_SPEED = 1000;
+
+    // While held, the head is drawn this far ahead of the latest touch,
+    // to hide about a frame of touch-to-screen latency; but never more
+    // than TOUCH_PREDICT_MAX_DISTANCE off.
+    private static final long TOUCH_PREDICT_MILLIS = 16;
+    private static final float TOUCH_PREDICT_MAX_DISTANCE = 30;
+
+    private TouchTracker mTouchTracker = new TouchTracker(TOUCH_SAMPLES);
+
+    // The grab fit for the frame being recorded; see GrabFitFrame().
+    // The predicted touch point is only good while mFrameFitValid.
+    private boolean mFrameFitValid = false;
+    private float mFramePredictX = 0;
+    private float mFramePredictY = 0;
+    private float mFrameGrabVelX = 0;
+    private float mFrameGrabVelY = 0;
+
+    // Aim preview: dots along the path, the last one at the landing.
+    private static final int AIM_DOTS = 12;
+    private static final float AIM_DOT_RADIUS = 8.0f;
+    private static final float AIM_LANDING_RADIUS = Shot.MAX_RADIUS;
+
+    // Scratch for the preview, so drawing it doesn't allocate.
+    private final Shot mAimShot = new Shot(0, 0, 0, 0, 0, 0);
+    private final float[] mAimWorldX = new float[AIM_DOTS];
+    private final float[] mAimWorldY = new float[AIM_DOTS];
+    private final float[] mAimWorldZ = new float[AIM_DOTS];
+    private final float[] mAimScreenX = new float[AIM_DOTS];
+    private final float[] mAimScreenY = new float[AIM_DOTS];
+    private final float[] mAimScreenZ = new float[AIM_DOTS];
+
+    // Largest step the band simulation stays stable at.
+    private static final float SPRING_MAX_STEP = 0.017f;
+
     private void SpringUpdate(float dt) {
+      // The band is stiff, so it still needs small steps even when the
+      // rest of the sim takes bigger ones.
+      mSpringTime = mSimTime - dt;
+      while (dt > 0) {
+        float step = Math.min(dt, SPRING_MAX_STEP);
+        dt -= step;
+        mSpringTime += step;
+        SpringStep(step);
+      }
+    }
+
+    private void SpringStep(float dt) {
       switch (mSpringState) {
         case SPRING_HELD: {
           EffectStretch();
@@ -1479,8 +2763,10 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
               // Emit the shot.
               mSpringState = SPRING_EMITTED;
               mReloadTime = 0;
-              mShots.add(new Shot(mHeadX, mHeadY, 0,
-                                  mHeadVelX, mHeadVelY, speed1 * SHOT_DZ_FACTOR));
+              mAllocs.Count(AllocTracker.SHOT);
+              ShotLaunch(new Shot(mHeadX, mHeadY, 0,
+                                  mHeadVelX, mHeadVelY, speed1 * SHOT_DZ_FACTOR),
+                         mSpringTime);
             }
           }
 
@@ -1496,49 +2782,128 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
       }
     }
 
-    public void ShotUpdate(Shot s, float dt) {
-      if (s.mAlive) {
-        float y0 = s.mY;
-        s.mX += dt * s.mDX;
-        s.mY += dt * s.mDY;
-        s.mZ += dt * s.mDZ;
+    /**
+     * Returns how far along the segment from (x0, y0) to (x1, y1),
+     * from 0 to 1, it first comes within r of (cx, cy); or -1 if it
+     * never does.
+     */
+    private float SegmentCircleHit(float x0, float y0, float x1, float y1,
+                                   float cx, float cy, float r) {
+      float fx = x0 - cx;
+      float fy = y0 - cy;
+      float c = fx * fx + fy * fy - r * r;
+      if (c <= 0) {
+        // Starts inside.
+        return 0;
+      }
+      float dx = x1 - x0;
+      float dy = y1 - y0;
+      float a = dx * dx + dy * dy;
+      float b = fx * dx + fy * dy;
+      if (a == 0 || b >= 0) {
+        // Not moving, or moving away.
+        return -1;
+      }
+      float disc = b * b - a * c;
+      if (disc < 0) {
+        return -1;
+      }
+      float u = (-b - (float) Math.sqrt(disc)) / a;
+      return u <= 1 ? u : -1;
+    }
+
+    // Solves a new shot's path and schedules its landing.
+    private void ShotLaunch(Shot s, double launchTime) {
+      ShotSolve(s, launchTime);
+      mShots.add(s);
+      mShotLandings.add(s);
+    }
+
+    // Works out when s bounces and lands, from its launch state.
+    private void ShotSolve(Shot s, double launchTime) {
+      s.mLaunchTime = launchTime;
+      if (s.mDY >= 0) {
+        s.mBounceAge = Float.POSITIVE_INFINITY;
+      } else if (s.mLaunchY <= 0) {
+        s.mBounceAge = 0;
+      } else {
+        s.mBounceAge = s.mLaunchY / -s.mDY;
+      }
+      // z = z0 + dz * age - GRAVITY / 2 * age^2 reaches 0 at:
+      float z0 = Math.max(s.mLaunchZ, 0);
+      s.mLandAge = (s.mDZ + (float) Math.sqrt(s.mDZ * s.mDZ + 2 * GRAVITY * z0)) / GRAVITY;
+    }
 
-        // Gravity.
-        s.mDZ -= GRAVITY * dt;
+    // Moves s to where it is age seconds after launch.
+    private void ShotSetAge(Shot s, float age) {
+      s.mAge = age;
+      s.mX = s.mLaunchX + s.mDX * age;
+      float y = s.mLaunchY + s.mDY * age;
+      // After the bounce, the path is mirrored about y = 0.
+      s.mY = age > s.mBounceAge ? -y : y;
+      s.mZ = s.mLaunchZ + (s.mDZ - GRAVITY / 2 * age) * age;
+    }
 
-        // Bounce off bottom
-        if ((s.mY < 0 && s.mDY < 0)
-            /* || (s.mY > mCanvasHeight && s.mDY > 0) */) {
-          s.mDY = -s.mDY;
+    public void ShotUpdate(Shot s) {
+      if (s.mAlive) {
+        float age0 = s.mAge;
+        float x0 = s.mX;
+        float y0 = s.mY;
+        float age = Math.min((float) (mSimTime - s.mLaunchTime), s.mLandAge);
+        ShotSetAge(s, age);
+
+        // The path this step, as one or two legs: to (bx, by), then
+        // after a bounce on to (s.mX, s.mY).
+        float bx = s.mX;
+        float by = s.mY;
+        boolean bounced = s.mBounceAge >= age0 && s.mBounceAge < age;
+        if (bounced) {
+          bx = s.mLaunchX + s.mDX * s.mBounceAge;
+          by = 0;
         }
 
-        // Check for hits.
+        // Check for hits along the whole path, not just where it ends,
+        // so a fast shot can't pass through a target between steps.
+        // The earliest hit wins.
+        Target hit = null;
+        float hitTime = 2;
         for (int i = 0; i < mTargets.size(); i++) {
           Target t = mTargets.get(i);
           float r = TargetGetHitRadius(t);
-          if (Distance3(t.mX, t.mY, 0, s.mX, s.mY, 0) <=
-              TargetGetHitRadius(t)) {
-            EffectHitTarget(false);
-            t.mAlive = false;
-            s.mAlive = false;
-            AddScore(5);
-            break;
+          if (r <= 0) {
+            continue;
+          }
+          float u = SegmentCircleHit(x0, y0, bx, by, t.mX, t.mY, r);
+          if (u < 0 && bounced) {
+            u = SegmentCircleHit(bx, by, s.mX, s.mY, t.mX, t.mY, r);
+            if (u >= 0) {
+              u += 1;
+            }
+          }
+          if (u >= 0 && u < hitTime) {
+            hit = t;
+            hitTime = u;
           }
         }
-
-        if (s.mZ < 0 && s.mAlive) {
-          ShotLanded(s);
+        if (hit != null) {
+          float z = TargetFamily(hit.mState) == TARGET_FLY ? TARGET_FLY_HEIGHT : 30;
+          mParticles.Emit(12, PARTICLE_GOO, hit.mX, hit.mY, z, 150, 120, 0.6f, 14);
+          EffectHitTarget(false);
+          hit.mAlive = false;
           s.mAlive = false;
+          AddScore(5);
         }
       }
     }
 
     private void ShotLanded(Shot s) {
-      // TODO make a splash anim
       float x = s.mX;
       float y = s.mY;
+      mParticles.Emit(10, PARTICLE_DIRT, x, y, 0, 120, 150, 0.5f, 12);
 
-      // TODO sound
+      // Farther away is quieter.
+      float depth = ZSCALE / (Math.max(y, 0) + ZOFFSET);
+      mMixer.Play(mSoundLand, Clamp(depth * 1.2f, 0.2f, 1.0f));
       AddScore(-1);
     }
 
@@ -1592,8 +2957,9 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
           c = TargetPickValidSpot();
           float dx = 0; // (c.x - x) / (TARGET_MOVE_TIME - TARGET_EXPAND_TIME);
           float dy = 0; // (c.y - y) / (TARGET_MOVE_TIME - TARGET_EXPAND_TIME);
+          mAllocs.Count(AllocTracker.TARGET);
           Target t = new Target(x, y, dx, dy, TARGET_MAX_RADIUS);
-          mTargets.add(t);
+          TargetAdd(t);
           return t;
         }
       }
@@ -1698,7 +3064,7 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
       } else {
         t.mDirX = (c.x - t.mX) / dist;
         t.mDirY = (c.y - t.mY) / dist;
-        float speed = TARGET_WALK_SPEED * GameWalkSpeedFactor();
+        float speed = TARGET_WALK_SPEED * mLevelParams.mWalkSpeedFactor;
         t.mDX = t.mDirX * speed;
         t.mDY = t.mDirY * speed;
         t.mTravelTime = dist / speed;
@@ -1724,21 +3090,8 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
       t.mState = TargetState.FLY;
     }
 
-    private int TargetMaxEggsToLay() {
-      if (mLevel <= 2) {
-        return 1;
-      } else if (mLevel <= 4) {
-        return 2;
-      } else {
-        int i = 2 + (mLevel - 4) / 2;
-        if (i > 5) {
-          i = 5;
-        }
-        return i;
-      }
-    }
-
-    private void TargetUpdate(Target t, float dt) {
+    /** TargetUpdate kernel for the TARGET_LARVA family. */
+    private void TargetUpdateLarva(Target t, float dt) {
       t.mTimer += dt;
       switch (t.mState) {
         case EGG:
@@ -1781,7 +3134,13 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
         case LARVA_DIE:
           // TODO
           break;
+      }
+    }
 
+    /** TargetUpdate kernel for the TARGET_GROUND family. */
+    private void TargetUpdateGround(Target t, float dt) {
+      t.mTimer += dt;
+      switch (t.mState) {
         case WALK:
           t.mX += t.mDX * dt;
           t.mY += t.mDY * dt;
@@ -1799,13 +3158,16 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
           break;
 
         case MUNCH:
-          if (TargetTimerCheck(t, GameTargetMunchTime())) {
+          if (TargetTimerCheck(t, mLevelParams.mMunchTime)) {
             if (!t.mFlowerToEat.mAlive) {
               // We missed the flower.
               t.mState = TargetState.SHRIVEL;
             } else {
               // We just killed the flower!
-              t.mFlowerToEat.mAlive = false;  // TODO effect
+              Flower f = t.mFlowerToEat;
+              f.mAlive = false;
+              mParticles.Emit(10, PARTICLE_PETAL, f.mX, f.mY, FLOWER_HEIGHT,
+                              80, 100, 0.8f, 10);
               t.mState = TargetState.BURROW;
             }
             t.mFlowerToEat = null;
@@ -1815,7 +3177,8 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
         case SHRIVEL:
           if (TargetTimerCheck(t, TARGET_SHRIVEL_TIME)) {
             // Done.
-            t.mAlive = false;  // TODO effect
+            t.mAlive = false;
+            mParticles.Emit(8, PARTICLE_DUST, t.mX, t.mY, 0, 40, 60, 0.6f, 14);
           }
           break;
 
@@ -1830,7 +3193,13 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
             t.mState = TargetState.FLY_RISE;
           }
           break;
+      }
+    }
 
+    /** TargetUpdate kernel for the TARGET_FLY family. */
+    private void TargetUpdateFly(Target t, float dt) {
+      t.mTimer += dt;
+      switch (t.mState) {
         case FLY_RISE:
           if (TargetTimerCheck(t, TARGET_FLY_RISE_TIME)) {
             TargetFlyToLocation(t);
@@ -1853,10 +3222,11 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
 
         case FLY_LAY_EGG:
           if (TargetTimerCheck(t, TARGET_LAY_EGG_TIME)) {
-            mTargets.add(new Target(t.mX, t.mY, 0, 0, TARGET_MAX_RADIUS));
+            mAllocs.Count(AllocTracker.TARGET);
+            TargetAdd(new Target(t.mX, t.mY, 0, 0, TARGET_MAX_RADIUS));
             t.mEggsLaid++;
 
-            if (t.mEggsLaid < TargetMaxEggsToLay()) {
+            if (t.mEggsLaid < mLevelParams.mMaxEggsToLay) {
               TargetFlyToLocation(t);
             } else {
               // Escape!
@@ -1877,8 +3247,10 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
         case FLY_ESCAPE: {
           t.mX += t.mDX * dt;
           t.mY += t.mDY * dt;
-          Coord c = Project(t.mX, t.mY, 0);
-          if (Math.abs(c.x - mCanvasWidth / 2) > mCanvasWidth / 2 + 200 * c.z + 50) {
+          // Projected inline rather than with Project(), which isn't
+          // thread-safe; see TargetUpdateIsLocal().
+          float z = ZSCALE / (t.mY + ZOFFSET);
+          if (Math.abs(t.mX * z) > mCanvasWidth / 2 + 200 * z + 50) {
             // Safely offscreen.
             t.mAlive = false;
           }
@@ -1893,6 +3265,7 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
       Coord c = TargetPickValidSpot();
       float x = c.x;
       float y = c.y;
+      mAllocs.Count(AllocTracker.FLOWER);
       Flower f = new Flower(x, y);
       mFlowers.add(f);
       return f;
@@ -1905,48 +3278,178 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
       return false;
     }
 
-    private void FlingerDraw(Canvas canvas) {
-      Coord a0 = Project(mAnchor0X, mAnchor0Y, 0);
-      Coord a1 = Project(mAnchor1X, mAnchor1Y, 0);
-      Coord h = Project(mHeadX, mHeadY, 0);
+    private void FlingerDraw(RenderSink sink) {
+      float headX = mHeadX;
+      float headY = mHeadY;
+      if (mFrameFitValid) {
+        float dx = mFramePredictX - mHeadX;
+        float dy = mFramePredictY - mHeadY;
+        float d = Distance(0, 0, dx, dy);
+        float scale = d > TOUCH_PREDICT_MAX_DISTANCE ? TOUCH_PREDICT_MAX_DISTANCE / d : 1;
+        headX += dx * scale;
+        headY += dy * scale;
+      }
+      Coord h = Project(headX, headY, 0);
 
       // Pending shot shadow.
-      if (mSpringState != SPRING_EMITTED) {
-        ShotDrawShadow(canvas, h.x, h.y, h.z, Shot.MAX_RADIUS);
+      if (mSpringState != SPRING_EMITTED && mDrawShadows) {
+        ShotDrawShadow(sink, h.x, h.y, h.z, Shot.MAX_RADIUS);
       }
 
       // Anchors.
-      canvas.drawRect(a0.x - 5, a0.y - 10,
-                      a0.x + 5, a0.y + 10, mAnchorPaint);
-      canvas.drawRect(a1.x - 5, a1.y - 10,
-                      a1.x + 5, a1.y + 10, mAnchorPaint);
+      sink.DrawRect(mAnchor0ScreenX - 5, mAnchor0ScreenY - 10,
+                      mAnchor0ScreenX + 5, mAnchor0ScreenY + 10, mAnchorPaint);
+      sink.DrawRect(mAnchor1ScreenX - 5, mAnchor1ScreenY - 10,
+                      mAnchor1ScreenX + 5, mAnchor1ScreenY + 10, mAnchorPaint);
 
       // Bands.
       float width =
         Clamp(BAND_MAX_WIDTH * (mAnchor1X - mAnchor0X) / (mBand0Length + mBand1Length),
               1, BAND_MAX_WIDTH);
       mBandPaint.setStrokeWidth(width);
-      canvas.drawLine(a0.x, a0.y, h.x, h.y, mBandPaint);
-      canvas.drawLine(a1.x, a1.y, h.x, h.y, mBandPaint);
+      sink.DrawLine(mAnchor0ScreenX, mAnchor0ScreenY, h.x, h.y, mBandPaint);
+      sink.DrawLine(mAnchor1ScreenX, mAnchor1ScreenY, h.x, h.y, mBandPaint);
 
       // Pending shot.
       if (mSpringState != SPRING_EMITTED) {
-        ShotDraw(canvas, h.x, h.y, mHeadY, h.z * Shot.MAX_RADIUS);
+        ShotDraw(sink, h.x, h.y, headY, h.z * Shot.MAX_RADIUS);
+      }
+    }
+
+    // Potential energy stored in the bands with the head at (x, y).
+    private float SpringEnergy(float x, float y) {
+      float s0 = Math.max(0, Distance(mAnchor0X, mAnchor0Y, x, y) - BAND_REST_LENGTH);
+      float s1 = Math.max(0, Distance(mAnchor1X, mAnchor1Y, x, y) - BAND_REST_LENGTH);
+      return BAND_K / 2 * (s0 * s0 + s1 * s1);
+    }
+
+    // Distance along the unit ray from (px, py) in direction (dx, dy)
+    // at which it leaves the circle of radius r around (cx, cy), or -1
+    // if it never enters it.
+    private float RayCircleExit(float px, float py, float dx, float dy,
+                                float cx, float cy, float r) {
+      float fx = px - cx;
+      float fy = py - cy;
+      float b = fx * dx + fy * dy;
+      float disc = b * b - (fx * fx + fy * fy - r * r);
+      if (disc < 0) {
+        return -1;
+      }
+      return -b + (float) Math.sqrt(disc);
+    }
+
+    /**
+     * Predicts the shot a release would fire right now, with the flick
+     * adding (grabVelX, grabVelY), into mAimShot.  Returns false if a
+     * release now wouldn't fire.
+     *
+     * The head flies from where it's held toward the middle of the
+     * anchors, and is let go where the bands stop speeding it up: past
+     * the point where both go slack, or at the middle if they never
+     * do.  Nothing damps a released head, so its speed there comes
+     * from the drop in band energy, plus what a flick adds.  The real
+     * band path curves a little, so this is close but not exact.
+     */
+    private boolean AimPredict(float grabVelX, float grabVelY) {
+      if (mSpringState != SPRING_HELD
+          || Math.max(mBand0Length, mBand1Length) <= BAND_RELEASE_LENGTH) {
+        return false;
+      }
+      float mx = (mAnchor0X + mAnchor1X) / 2;
+      float my = (mAnchor0Y + mAnchor1Y) / 2;
+      float dist = Distance(mHeadX, mHeadY, mx, my);
+      if (dist < 1) {
+        return false;
+      }
+      float dx = (mx - mHeadX) / dist;
+      float dy = (my - mHeadY) / dist;
+
+      float along = dist;
+      float exit0 = RayCircleExit(mHeadX, mHeadY, dx, dy, mAnchor0X, mAnchor0Y,
+                                  BAND_REST_LENGTH);
+      float exit1 = RayCircleExit(mHeadX, mHeadY, dx, dy, mAnchor1X, mAnchor1Y,
+                                  BAND_REST_LENGTH);
+      if (exit0 >= 0 && exit1 >= 0) {
+        along = Math.max(0, Math.min(exit0, exit1));
+      }
+      float ex = mHeadX + dx * along;
+      float ey = mHeadY + dy * along;
+
+      float grabSpeed2 = grabVelX * grabVelX + grabVelY * grabVelY;
+      float energy = SpringEnergy(mHeadX, mHeadY) - SpringEnergy(ex, ey)
+                     + BAND_LOADED_MASS / 2 * grabSpeed2;
+      if (energy <= 0) {
+        return false;
+      }
+      float speed = (float) Math.sqrt(2 * energy / BAND_LOADED_MASS);
+
+      Shot s = mAimShot;
+      s.mLaunchX = ex;
+      s.mLaunchY = ey;
+      s.mLaunchZ = 0;
+      s.mDX = dx * speed;
+      s.mDY = dy * speed;
+      s.mDZ = speed * SHOT_DZ_FACTOR;
+      ShotSolve(s, 0);
+      return true;
+    }
+
+    // Dots along the predicted flight, and a ring where it lands.
+    private void AimPreviewDraw(RenderSink sink) {
+      if (!AimPredict(mFrameGrabVelX, mFrameGrabVelY)) {
+        return;
+      }
+      Shot s = mAimShot;
+      float step = s.mLandAge / AIM_DOTS;
+      for (int i = 0; i < AIM_DOTS; i++) {
+        ShotSetAge(s, step * (i + 1));
+        mAimWorldX[i] = s.mX;
+        mAimWorldY[i] = s.mY;
+        mAimWorldZ[i] = s.mZ;
       }
+      ProjectBatch(mAimWorldX, mAimWorldY, mAimWorldZ, AIM_DOTS,
+                   mAimScreenX, mAimScreenY, mAimScreenZ);
+
+      // The last dot is the landing spot; ring it with an oval the
+      // shape of a shot's shadow.
+      int last = AIM_DOTS - 1;
+      float halfWidth = AIM_LANDING_RADIUS * mAimScreenZ[last];
+      float halfHeight = halfWidth * 0.6f;
+      sink.DrawOval(mAimScreenX[last] - halfWidth, mAimScreenY[last] - halfHeight,
+                    mAimScreenX[last] + halfWidth, mAimScreenY[last] + halfHeight,
+                    mAimPaint);
+
+      for (int i = 0; i < last; i++) {
+        sink.DrawCircle(mAimScreenX[i], mAimScreenY[i],
+                        Math.max(1, AIM_DOT_RADIUS * mAimScreenZ[i]), mAimPaint);
+      }
+    }
+
+    // Builds the effects.  They're synthesized rather than loaded from
+    // resources: each is a short tone sweep and/or noise burst.
+    private void SoundsLoad() {
+      mSoundLand = mMixer.Load(SoundMixer.Synth(180, 60, 150, 0.6f, 0.5f));
+      mSoundBounce = mMixer.Load(SoundMixer.Synth(900, 700, 40, 0.1f, 0.3f));
+      mSoundHit = mMixer.Load(SoundMixer.Synth(700, 150, 120, 0.2f, 0.6f));
+      mSoundBonus = mMixer.Load(SoundMixer.Synth(400, 1200, 350, 0, 0.5f));
     }
 
     private void EffectBounce(float x, float y, float z) {
-      mVibrator.vibrate(10);  // Very slight tick
-      // TODO sound
+      mHaptics.Pulse(HAPTIC_BOUNCE, 10);  // Very slight tick
+      mMixer.Play(mSoundBounce, 0.5f);
     }
 
     private void EffectHitTarget(boolean bounced) {
+      if (mState == GameState.SWARM) {
+        // Hits happen constantly; don't buzz the phone to death.
+        return;
+      }
       if (bounced) {
-        mVibrator.vibrate(20);
-        // TODO sound
+        mHaptics.Pulse(HAPTIC_HIT, 20);
+        mMixer.Play(mSoundHit, 0.7f);
       } else {
-        mVibrator.vibrate(30);
-        // TODO sound
+        mHaptics.Pulse(HAPTIC_HIT, 30);
+        mMixer.Play(mSoundHit, 1.0f);
       }
     }
 
@@ -1958,7 +3461,7 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
       mStretchEffectLength = stretch;
 
       if (s1 != s0) {
-        mVibrator.vibrate(5);
+        mHaptics.Pulse(HAPTIC_STRETCH, 5);
       }
     }
 
@@ -2020,24 +3523,29 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
       }
     }
 
-    private int GameEggsToAdd() {
-      if (mLevel <= 2) {
-        return 4;
-      } else if (mLevel <= 4) {
-        return 5;
+    private void GameSetLevel(int level) {
+      mLevel = level;
+      if (mLevelTable != null && level >= 1 && level <= mLevelTable.length) {
+        mLevelParams = mLevelTable[level - 1];
       } else {
-        return 6 + (int) (mLevel - 5);
+        mLevelParams = LevelParams.ForLevel(level, TARGET_MUNCH_TIME);
       }
     }
 
-    private float GameMunchPauseTime() {
-      if (mLevel <= 4) {
-        return 0.75f;
-      } else if (mLevel <= 8) {
-        return 0.50f;
-      } else {
-        return 0.25f;
+    /**
+     * Parses the level definitions (see LevelParams.Parse), one per
+     * level starting from level 1.  Levels past the end use the
+     * built-in tuning; returns null if there are none.
+     */
+    private LevelParams[] LevelTableParse(String[] definitions) {
+      if (definitions == null || definitions.length == 0) {
+        return null;
+      }
+      LevelParams[] table = new LevelParams[definitions.length];
+      for (int i = 0; i < definitions.length; i++) {
+        table[i] = LevelParams.Parse(i + 1, definitions[i], TARGET_MUNCH_TIME);
       }
+      return table;
     }
 
     private int GameScoreFlowerAmount(int flower) {
@@ -2052,34 +3560,181 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
       }
     }
 
-    private float GameWalkSpeedFactor() {
-      final float[] speeds = new float[] {
-        0.50f,
-        0.75f,
-        0.90f,
-        1.00f
-      };
-      if (mLevel < speeds.length) {
-        return speeds[mLevel];
-      } else {
-        return speeds[speeds.length - 1];
+    /**
+     * Returns true if t's TargetUpdate kernel will only modify t itself:
+     * no flowers, score, random numbers, particles, Coord pool or new
+     * targets.
+     * Such updates can run in parallel with each other.
+     */
+    private boolean TargetUpdateIsLocal(Target t, float dt) {
+      float timer = t.mTimer + dt;
+      switch (t.mState) {
+        case LOOK_RISE:
+          return timer < TARGET_RISE_TIME;
+        case LOOK_CLOSE:
+          return timer < TARGET_CLOSE_TIME;
+        case WALK:
+          return timer < t.mTravelTime;
+        case MUNCH:
+          return timer < mLevelParams.mMunchTime;
+        case SHRIVEL:
+          return timer < TARGET_SHRIVEL_TIME;
+        case FLY_RISE:
+          return timer < TARGET_FLY_RISE_TIME;
+        case FLY_LAY_EGG:
+          return timer < TARGET_LAY_EGG_TIME;
+        default:
+          return true;
       }
     }
 
-    private float GameTargetMunchTime() {
-      return TARGET_MUNCH_TIME / GameWalkSpeedFactor();
+    /**
+     * Parallel phase of TargetsUpdate: steps every target whose
+     * update is local, and flags the rest in mTargetDeferred.
+     */
+    private class TargetLocalStep implements ParallelFor.Body {
+      public int mFamily;
+      public ArrayList<Target> mBucket;
+      public float mDt;
+
+      public void Run(int begin, int end) {
+        for (int i = begin; i < end; i++) {
+          Target t = mBucket.get(i);
+          boolean local = TargetUpdateIsLocal(t, mDt);
+          mTargetDeferred[i] = !local;
+          if (local) {
+            TargetUpdateKernel(mFamily, t, mDt);
+          }
+        }
+      }
     }
 
-    private void TargetsUpdate(float dt) {
-      // Update targets.
+    /**
+     * At or above this many targets, TargetsUpdate goes parallel; from
+     * res/values/tuning.xml.
+     */
+    private final int mParallelTargetThreshold;
+    private ParallelFor mTargetWorkers;
+    private TargetLocalStep mTargetLocalStep = new TargetLocalStep();
+    private boolean[] mTargetDeferred = new boolean[0];
+
+    private void TargetsUpdateParallel(int family, ArrayList<Target> bucket, float dt) {
+      int count = bucket.size();
+      if (mTargetWorkers == null) {
+        mTargetWorkers = new ParallelFor(ParallelFor.DefaultWorkers(), 64);
+      }
+      if (mTargetDeferred.length < count) {
+        mTargetDeferred = new boolean[count * 2];
+      }
+
+      // Phase 1: all the self-contained updates, in parallel.
+      mTargetLocalStep.mFamily = family;
+      mTargetLocalStep.mBucket = bucket;
+      mTargetLocalStep.mDt = dt;
+      mTargetWorkers.Run(mTargetLocalStep, count);
+      mTargetLocalStep.mBucket = null;
+
+      // Phase 2: the updates with side effects (spawns, flower kills,
+      // score, random picks), serially and in bucket order, so they
+      // happen exactly as they would in the serial loop.
+      for (int i = 0; i < count; i++) {
+        if (mTargetDeferred[i]) {
+          TargetUpdateKernel(family, bucket.get(i), dt);
+        }
+      }
+    }
+
+    // State families, for bucketing targets.
+    private static final int TARGET_LARVA = 0;  // EGG through LARVA_DIE
+    private static final int TARGET_GROUND = 1;  // WALK through PUPATE
+    private static final int TARGET_FLY = 2;  // FLY_*
+
+    private int TargetFamily(TargetState state) {
+      switch (state) {
+        case WALK:
+        case MUNCH:
+        case BURROW:
+        case SHRIVEL:
+        case PUPATE:
+          return TARGET_GROUND;
+        case FLY_RISE:
+        case FLY:
+        case FLY_LAY_EGG:
+        case FLY_ESCAPE:
+          return TARGET_FLY;
+        default:
+          return TARGET_LARVA;
+      }
+    }
+
+    private ArrayList<Target> TargetBucket(int family) {
+      if (family == TARGET_GROUND) {
+        return mTargetsGround;
+      } else if (family == TARGET_FLY) {
+        return mTargetsFly;
+      }
+      return mTargetsLarva;
+    }
+
+    private void TargetAdd(Target t) {
+      mTargets.add(t);
+      TargetBucket(TargetFamily(t.mState)).add(t);
+    }
+
+    // Re-sorts mTargets into the buckets, after states have changed.
+    private void TargetsRebucket() {
+      mTargetsLarva.clear();
+      mTargetsGround.clear();
+      mTargetsFly.clear();
       for (int i = 0; i < mTargets.size(); i++) {
-        TargetUpdate(mTargets.get(i), dt);
+        Target t = mTargets.get(i);
+        TargetBucket(TargetFamily(t.mState)).add(t);
+      }
+    }
+
+    // The family's kernel is the same for a whole bucket, so this
+    // branch predicts perfectly.
+    private void TargetUpdateKernel(int family, Target t, float dt) {
+      switch (family) {
+        case TARGET_LARVA:
+          TargetUpdateLarva(t, dt);
+          break;
+        case TARGET_GROUND:
+          TargetUpdateGround(t, dt);
+          break;
+        case TARGET_FLY:
+          TargetUpdateFly(t, dt);
+          break;
       }
+    }
+
+    private void TargetsUpdateBucket(int family, ArrayList<Target> bucket,
+                                     boolean parallel, float dt) {
+      if (parallel) {
+        TargetsUpdateParallel(family, bucket, dt);
+      } else {
+        for (int i = 0; i < bucket.size(); i++) {
+          TargetUpdateKernel(family, bucket.get(i), dt);
+        }
+      }
+    }
+
+    private void TargetsUpdate(float dt) {
+      // Update targets, a bucket at a time.  Flies go first: eggs they
+      // lay are appended to mTargetsLarva, which then runs last, so the
+      // new eggs get their first update this pass just as they did in
+      // one loop over mTargets.
+      boolean parallel = mTargets.size() >= mParallelTargetThreshold;
+      TargetsUpdateBucket(TARGET_FLY, mTargetsFly, parallel, dt);
+      TargetsUpdateBucket(TARGET_GROUND, mTargetsGround, parallel, dt);
+      TargetsUpdateBucket(TARGET_LARVA, mTargetsLarva, parallel, dt);
+
       for (int i = mTargets.size() - 1; i >= 0; i--) {
         if (mTargets.get(i).mAlive == false) {
           mTargets.remove(i);
         }
       }
+      TargetsRebucket();
       for (int i = mFlowers.size() - 1; i >= 0; i--) {
         if (mFlowers.get(i).mAlive == false) {
           mFlowers.remove(i);
@@ -2088,9 +3743,20 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
     }
 
     private void ShotsUpdate(float dt) {
-      // Update shots.
+      // Update shots.  Their paths are closed-form, so this is just
+      // the hit test along each one's path since the last update.
       for (int i = 0; i < mShots.size(); i++) {
-        ShotUpdate(mShots.get(i), dt);
+        ShotUpdate(mShots.get(i));
+      }
+
+      // Land the shots that are due.  Shots that hit something are
+      // still in the queue; they're dropped here.
+      while (!mShotLandings.isEmpty() && mShotLandings.peek().LandTime() <= mSimTime) {
+        Shot s = mShotLandings.poll();
+        if (s.mAlive) {
+          ShotLanded(s);
+          s.mAlive = false;
+        }
       }
       for (int i = mShots.size() - 1; i >= 0; i--) {
         if (mShots.get(i).mAlive == false) {
@@ -2106,7 +3772,7 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
         }
         if (mTargets.size() == 0) {
           if (mScorePhase == ScorePhase.NONE) {
-            mScorePhase = ScorePhase.MESSAGE;
+            GameSetScorePhase(ScorePhase.MESSAGE);
             mGameTimer = 0;
             SetMessage("Nice Job!");
           }
@@ -2120,7 +3786,7 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
           case MESSAGE:
             if (mGameTimer >= 2.0f) {
               mGameTimer -= 2.0f;
-              mScorePhase = ScorePhase.SCORE_FLOWERS;
+              GameSetScorePhase(ScorePhase.SCORE_FLOWERS);
               SetMessage("");
               mScoreFlower = -1;
             }
@@ -2132,10 +3798,14 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
               mScoreFlower++;
               if (mScoreFlower < mFlowers.size()) {
                 AddScore(GameScoreFlowerAmount(mScoreFlower));
-                // TODO effects
+                Flower f = mFlowers.get(mScoreFlower);
+                if (f != null) {
+                  mParticles.Emit(8, PARTICLE_SPARK, f.mX, f.mY, FLOWER_HEIGHT,
+                                  40, 150, 0.6f, 6);
+                }
               } else {
                 // Done scoring the flowers.
-                mScorePhase = ScorePhase.MOVE_FLOWERS;
+                GameSetScorePhase(ScorePhase.MOVE_FLOWERS);
                 mGameTimer = 0;
                 mFlowerToMove = 0;
               }
@@ -2149,12 +3819,13 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
               if (mFlowerToMove < mFlowers.size()) {
                 // Replace this flower with a new one somewhere else.
                 Coord c = TargetPickValidSpot();
+                mAllocs.Count(AllocTracker.FLOWER);
                 mFlowers.set(mFlowerToMove, new Flower(c.x, c.y));
                 mFlowerToMove++;
               } else {
                 // Done moving flowers.
-                mScorePhase = ScorePhase.ADD_EGGS;
-                mEggsToAdd = GameEggsToAdd();
+                GameSetScorePhase(ScorePhase.ADD_EGGS);
+                mEggsToAdd = mLevelParams.mEggsToAdd;
               }
             }
             break;
@@ -2168,17 +3839,19 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
                 // Delay the hatching of this egg, so the flowers can
                 // finish growing.
                 t.mTimer -= EGG_PREDELAY;
-                // TODO effects
+                mParticles.Emit(6, PARTICLE_DIRT, t.mX, t.mY, 0, 50, 80, 0.4f, 10);
                 mEggsToAdd--;
               } else {
                 // Done adding eggs... now go to it!
-                mLevel++;
-                mScorePhase = ScorePhase.NONE;
+                GameSetLevel(mLevel + 1);
+                GameSetScorePhase(ScorePhase.NONE);
               }
             }
             break;
         }
                 
+      } else if (mState == GameState.SWARM) {
+        SwarmUpdate(dt);
       } else {
         if (mTargets.size() == 0) {
           // Make sure the attract mode goes into a non-power-sucking
@@ -2192,6 +3865,97 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
       }
     }
 
+    // Swarm mode ramps the population up without bound (almost), so
+    // we can see where each subsystem stops fitting in a frame.
+    private static final int SWARM_START_TARGETS = 20;
+    private static final float SWARM_TARGETS_PER_SEC = 40;
+    private static final int SWARM_MAX_TARGETS = 5000;
+    private static final int SWARM_SPAWNS_PER_TICK = 10;
+    private static final int SWARM_FLOWERS = 20;
+    private static final float SWARM_SHOTS_PER_SEC = 4;
+    private static final float SWARM_SHOTS_PER_SEC_RAMP = 20;
+    private static final int SWARM_MAX_SHOTS = 3000;
+    private static final long SWARM_LOG_INTERVAL_NANOS = 1000L * 1000 * 1000;
+
+    private float mSwarmShotTimer;
+    private long mSwarmLastFrameNanos;
+    private int mSwarmFrames;
+    private long mSwarmFrameNanos;
+    private long mSwarmMaxFrameNanos;
+
+    private void SwarmUpdate(float dt) {
+      // Keep something for the bugs to eat.
+      while (mFlowers.size() < SWARM_FLOWERS) {
+        FlowerCreate();
+      }
+
+      // Spawn eggs, skipping TargetCreate()'s spacing check, which
+      // would give up long before the field is full.
+      int wanted = (int) Math.min(SWARM_MAX_TARGETS,
+                                  SWARM_START_TARGETS + SWARM_TARGETS_PER_SEC * mGameTimer);
+      for (int i = 0; i < SWARM_SPAWNS_PER_TICK && mTargets.size() < wanted; i++) {
+        Coord c = TargetPickValidSpot();
+        mAllocs.Count(AllocTracker.TARGET);
+        Target t = new Target(c.x, c.y, 0, 0, TARGET_MAX_RADIUS);
+        t.mTimer = Lerp((float) Math.random(), -2 * EGG_PREDELAY, 0);
+        TargetAdd(t);
+      }
+
+      // Auto-fire, at an ever-increasing rate.
+      float rate = SWARM_SHOTS_PER_SEC + SWARM_SHOTS_PER_SEC_RAMP * mGameTimer;
+      mSwarmShotTimer += dt * rate;
+      while (mSwarmShotTimer >= 1) {
+        mSwarmShotTimer -= 1;
+        if (mShots.size() < SWARM_MAX_SHOTS) {
+          SwarmFire();
+        }
+      }
+    }
+
+    // Fires a shot from the flinger that lands on a random spot.
+    private void SwarmFire() {
+      Coord c = TargetPickValidSpot();
+      float dist = Distance(mHeadX, mHeadY, c.x, c.y);
+      if (dist < 1) {
+        return;
+      }
+      // A shot launched at speed v lands after 2 * v * SHOT_DZ_FACTOR /
+      // GRAVITY, so it travels 2 * SHOT_DZ_FACTOR * v^2 / GRAVITY.
+      float speed = (float) Math.sqrt(dist * GRAVITY / (2 * SHOT_DZ_FACTOR));
+      float dx = (c.x - mHeadX) / dist * speed;
+      float dy = (c.y - mHeadY) / dist * speed;
+      mAllocs.Count(AllocTracker.SHOT);
+      ShotLaunch(new Shot(mHeadX, mHeadY, 0, dx, dy, speed * SHOT_DZ_FACTOR), mSimTime);
+    }
+
+    // Called once per recorded frame.  In swarm mode, periodically
+    // logs frame time against the current entity counts.
+    private void SwarmLogFrame() {
+      if (mState != GameState.SWARM) {
+        return;
+      }
+      long now = System.nanoTime();
+      if (mSwarmLastFrameNanos != 0) {
+        long frame = now - mSwarmLastFrameNanos;
+        mSwarmFrames++;
+        mSwarmFrameNanos += frame;
+        mSwarmMaxFrameNanos = Math.max(mSwarmMaxFrameNanos, frame);
+      }
+      mSwarmLastFrameNanos = now;
+
+      if (mSwarmFrameNanos >= SWARM_LOG_INTERVAL_NANOS) {
+        Log.i(LOG_TAG, String.format(
+            "swarm t=%.1f targets=%d shots=%d flowers=%d draws=%d"
+            + " frame avg=%.2fms max=%.2fms",
+            mGameTimer, mTargets.size(), mShots.size(), mFlowers.size(),
+            mDisplayList.size(),
+            mSwarmFrameNanos / 1e6 / mSwarmFrames, mSwarmMaxFrameNanos / 1e6));
+        mSwarmFrames = 0;
+        mSwarmFrameNanos = 0;
+        mSwarmMaxFrameNanos = 0;
+      }
+    }
+
     private void GameUpdate() {
       if (mState == GameState.INVALID) {
         if (mTargetMaxX > 100) {
@@ -2216,17 +3980,30 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
       deltaTime = Clamp(deltaTime, 0, 0.200f);
 
       // Enforce a maximum tick size to keep the physics reliable.
-      // Use multiple subticks if the deltaTime is too large.
+      // Use multiple subticks if the deltaTime is too large.  Shot
+      // collisions are swept, so they don't limit the tick size; the
+      // band substeps on its own in SpringUpdate().
       while (deltaTime > 0) {
-        float dt = Clamp(deltaTime, 0, 0.017f);
+        float dt = Clamp(deltaTime, 0, MAX_SUBTICK);
         deltaTime -= dt;
       
         mGameTimer += dt;
+        mSimTime += dt;
+        long t = System.nanoTime();
+        long subtickStart = t;
         SpringUpdate(dt);
+        t = mProfiler.Mark(FrameProfiler.SPRING, t);
         FlowersUpdate(dt);
+        t = mProfiler.Mark(FrameProfiler.FLOWERS, t);
         TargetsUpdate(dt);
+        t = mProfiler.Mark(FrameProfiler.TARGETS, t);
         ShotsUpdate(dt);
+        t = mProfiler.Mark(FrameProfiler.SHOTS, t);
         GameStateUpdate(dt);
+        t = mProfiler.Mark(FrameProfiler.STATE, t);
+        mParticles.Update(dt, GRAVITY);
+        t = mProfiler.Mark(FrameProfiler.PARTICLES, t);
+        mTrace.Complete(mTraceSubtick, mTraceSim, subtickStart, t);
       }
     }
   }  // class FlingersThread
@@ -2241,8 +4018,27 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
   /** The thread that actually draws the animation */
   private FlingersThread thread;
 
+  /** Surface size as a fraction of the view size; see setRenderScale(). */
+  private float mRenderScale = 1;
+  private int mViewWidth = 0;
+  private int mViewHeight = 0;
+
   public FlingersView(Context context, AttributeSet attrs) {
     super(context, attrs);
+    boolean debuggable = IsDebuggable(context);
+    mTrace = new TraceRecorder(16, debuggable);
+    if (debuggable) {
+      // Counting costs a little on every allocation, so only debug
+      // builds turn it on.
+      Debug.startAllocCounting();
+      mAllocs = new AllocTracker(true, new AllocTracker.Counter() {
+          public long ThreadAllocations() {
+            return Debug.getThreadAllocCount();
+          }
+        });
+    } else {
+      mAllocs = new AllocTracker(false);
+    }
 
     // register our interest in hearing about changes to our surface
     SurfaceHolder holder = getHolder();
@@ -2267,6 +4063,17 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
     setFocusable(true); // make sure we get key events
   }
 
+  // Whether the app was built debuggable (android:debuggable).
+  private static boolean IsDebuggable(Context context) {
+    try {
+      ApplicationInfo info = context.getPackageManager().getApplicationInfo(
+          context.getPackageName(), 0);
+      return (info.flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+    } catch (PackageManager.NameNotFoundException e) {
+      return false;
+    }
+  }
+
   /**
    * Fetches the animation thread corresponding to this FlingersView.
    * 
@@ -2304,7 +4111,11 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
    */
   @Override
   public void onWindowFocusChanged(boolean hasWindowFocus) {
-    if (!hasWindowFocus) thread.Pause();
+    if (!hasWindowFocus) {
+      thread.Pause();
+    } else {
+      thread.Redisplay();
+    }
   }
 
   /**
@@ -2318,10 +4129,58 @@ class FlingersView extends SurfaceView implements SurfaceHolder.Callback {
     mScoreText = textView;
   }
 
+  /**
+   * Renders into a surface scale times the view's size (0 < scale <=
+   * 1), which the compositor stretches to fill the view.  Fill cost
+   * drops with the square of scale.  The game keeps working in view
+   * coordinates, so touch and gameplay are unaffected.
+   */
+  public void setRenderScale(float scale) {
+    mRenderScale = Math.max(0.1f, Math.min(scale, 1));
+    applyRenderScale();
+  }
+
+  public float getRenderScale() {
+    return mRenderScale;
+  }
+
+  /**
+   * Picks the surface's pixel format, e.g. PixelFormat.RGB_565 for
+   * half the fill bandwidth of RGBX_8888.  Must be called before the
+   * surface is created: changing the format recreates the surface,
+   * which this view's thread can't survive.
+   */
+  public void setRenderFormat(int pixelFormat) {
+    getHolder().setFormat(pixelFormat);
+  }
+
+  private void applyRenderScale() {
+    SurfaceHolder holder = getHolder();
+    if (mRenderScale >= 1 || mViewWidth <= 0 || mViewHeight <= 0) {
+      holder.setSizeFromLayout();
+    } else {
+      holder.setFixedSize(Math.max(1, Math.round(mViewWidth * mRenderScale)),
+                          Math.max(1, Math.round(mViewHeight * mRenderScale)));
+    }
+  }
+
+  @Override
+  protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+    super.onSizeChanged(w, h, oldw, oldh);
+    mViewWidth = w;
+    mViewHeight = h;
+    applyRenderScale();
+  }
+
   /* Callback invoked when the surface dimensions change. */
   public void surfaceChanged(SurfaceHolder holder, int format, int width,
                              int height) {
-    thread.setSurfaceSize(width, height);
+    thread.setSurfaceFormat(format);
+    // The game keeps to view coordinates; the surface may be smaller.
+    int viewWidth = mViewWidth > 0 ? mViewWidth : width;
+    int viewHeight = mViewHeight > 0 ? mViewHeight : height;
+    thread.setSurfaceSize(viewWidth, viewHeight,
+                          (float) width / viewWidth, (float) height / viewHeight);
   }
 
   /*
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tulrich.flingers;
+
+/**
+ * Per-phase frame timing.  Each phase's time is summed over a frame
+ * (e.g. across all of GameUpdate's subticks), then committed as one
+ * sample into that phase's Histogram.
+ *
+ * Usage, with one System.nanoTime() call per phase boundary:
+ *
+ *   long t = System.nanoTime();
+ *   SpringUpdate(dt);
+ *   t = profiler.Mark(FrameProfiler.SPRING, t);
+ *   FlowersUpdate(dt);
+ *   t = profiler.Mark(FrameProfiler.FLOWERS, t);
+ *
+ * Each phase must only be marked and committed by one thread.  The
+ * simulation phases (SPRING..FRAME) belong to the simulation thread,
+ * and RASTER and POST to the render thread.  Reports read other
+ * threads' histograms without locking, so they are approximate.
+ * Reset() only asks for a reset; each phase's histogram is cleared by
+ * its own thread, at that thread's next CommitFrame().
+ *
+ * If a TraceRecorder is attached, every Mark() is also recorded as a
+ * trace span.
+ */
+class FrameProfiler {
+  public static final int SPRING = 0;
+  public static final int FLOWERS = 1;
+  public static final int TARGETS = 2;
+  public static final int SHOTS = 3;
+  public static final int STATE = 4;
+  public static final int PARTICLES = 5;
+  public static final int UPDATE = 6;  // all of GameUpdate
+  public static final int SORT = 7;
+  public static final int DRAW = 8;  // all of GameDraw, including SORT
+  public static final int FRAME = 9;  // whole simulation frame
+  public static final int RASTER = 10;
+  public static final int POST = 11;
+  public static final int NUM_PHASES = 12;
+
+  public static final int FIRST_SIM_PHASE = SPRING;
+  public static final int LAST_SIM_PHASE = FRAME;
+  public static final int FIRST_RENDER_PHASE = RASTER;
+  public static final int LAST_RENDER_PHASE = POST;
+
+  private static final String[] NAMES = {
+    "spring", "flowers", "targets", "shots", "state", "particles", "update",
+    "sort", "draw", "frame", "raster", "post",
+  };
+
+  // 0.1ms buckets out to 50ms.
+  private static final int NUM_BUCKETS = 500;
+  private static final long BUCKET_NANOS = 100 * 1000;
+
+  private final long[] mPending = new long[NUM_PHASES];
+  private final boolean[] mTouched = new boolean[NUM_PHASES];
+  private final Histogram[] mHistograms = new Histogram[NUM_PHASES];
+
+  // Bumped by Reset().  A phase whose seen generation is behind gets
+  // cleared by its committing thread.
+  private volatile int mResetGeneration = 0;
+  private final int[] mSeenGeneration = new int[NUM_PHASES];
+
+  private TraceRecorder mTrace;
+  private final int[] mTraceNames = new int[NUM_PHASES];
+  private int mTraceSimTid;
+  private int mTraceRenderTid;
+
+  public FrameProfiler() {
+    for (int i = 0; i < NUM_PHASES; i++) {
+      mHistograms[i] = new Histogram(NUM_BUCKETS, BUCKET_NANOS);
+    }
+  }
+
+  public static String Name(int phase) {
+    return NAMES[phase];
+  }
+
+  /** Also records each Mark() into trace, on the given thread ids. */
+  public void SetTrace(TraceRecorder trace, int simTid, int renderTid) {
+    for (int i = 0; i < NUM_PHASES; i++) {
+      mTraceNames[i] = trace.RegisterName(NAMES[i]);
+    }
+    mTraceSimTid = simTid;
+    mTraceRenderTid = renderTid;
+    mTrace = trace;
+  }
+
+  /**
+   * Charges the time since start to phase, and returns the current
+   * time, to be passed as start for the next phase.
+   */
+  public long Mark(int phase, long start) {
+    long now = System.nanoTime();
+    mPending[phase] += now - start;
+    mTouched[phase] = true;
+    if (mTrace != null) {
+      mTrace.Complete(mTraceNames[phase],
+                      phase >= FIRST_RENDER_PHASE ? mTraceRenderTid : mTraceSimTid,
+                      start, now);
+    }
+    return now;
+  }
+
+  /**
+   * Ends the frame for phases [first, last]: each phase that was
+   * marked since the last commit gets one histogram sample.
+   */
+  public void CommitFrame(int first, int last) {
+    int gen = mResetGeneration;
+    for (int i = first; i <= last; i++) {
+      if (mSeenGeneration[i] != gen) {
+        mHistograms[i].Reset();
+        mSeenGeneration[i] = gen;
+      }
+      if (mTouched[i]) {
+        mHistograms[i].Add(mPending[i]);
+        mPending[i] = 0;
+        mTouched[i] = false;
+      }
+    }
+  }
+
+  public Histogram Get(int phase) {
+    return mHistograms[phase];
+  }
+
+  /**
+   * Starts fresh histograms for every phase, as of each thread's next
+   * CommitFrame().  Only one thread may call this.
+   */
+  public void Reset() {
+    mResetGeneration++;
+  }
+
+  /**
+   * Returns a one-line summary of phase, like
+   * "targets n=300 p50=0.40 p95=0.90 p99=1.20 max=2.31 ms".
+   */
+  public String Report(int phase) {
+    Histogram h = mHistograms[phase];
+    StringBuilder sb = new StringBuilder(64);
+    sb.append(NAMES[phase]);
+    h.AppendSummary(sb);
+    return sb.toString();
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tulrich.flingers;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free handoff of frames from one producer thread (simulation)
+ * to one consumer thread (render).
+ *
+ * The producer owns the back list and the consumer owns the front
+ * list; the third list sits in the middle slot.  Publish() and
+ * Acquire() each swap their own list with the middle slot in a single
+ * atomic operation, so neither side ever waits on the other.  If the
+ * producer publishes twice before the consumer acquires, the older
+ * frame is simply dropped.
+ */
+class FrameTripleBuffer {
+  private static final int INDEX_MASK = 3;
+  private static final int FRESH = 4;  // middle holds an unconsumed frame
+
+  private final RenderCommandList[] mLists = new RenderCommandList[3];
+  private final AtomicInteger mMiddle = new AtomicInteger(2);
+  private int mBack = 0;  // producer only
+  private int mFront = 1;  // consumer only
+
+  public FrameTripleBuffer(RenderSink measurer) {
+    for (int i = 0; i < mLists.length; i++) {
+      mLists[i] = new RenderCommandList(measurer);
+    }
+  }
+
+  /** Producer: the list to record the next frame into. */
+  public RenderCommandList GetBack() {
+    return mLists[mBack];
+  }
+
+  /**
+   * Producer: hands the back list to the consumer.
+   *
+   * @return true if this dropped an older frame the consumer never
+   *         picked up; that frame is now GetBack(), still intact.
+   */
+  public boolean Publish() {
+    int old = mMiddle.getAndSet(mBack | FRESH);
+    mBack = old & INDEX_MASK;
+    return (old & FRESH) != 0;
+  }
+
+  /** True if a published frame hasn't been picked up by Acquire() yet. */
+  public boolean HasUnconsumed() {
+    return (mMiddle.get() & FRESH) != 0;
+  }
+
+  /**
+   * Consumer: swaps in the newest published frame, if there is one.
+   *
+   * @return true if GetFront() changed
+   */
+  public boolean Acquire() {
+    if ((mMiddle.get() & FRESH) == 0) {
+      return false;
+    }
+    mFront = mMiddle.getAndSet(mFront) & INDEX_MASK;
+    return true;
+  }
+
+  /**
+   * Producer: total commands held by all three lists.  Only the
+   * producer records, so sizes and capacities can't change under it.
+   */
+  public int TotalSize() {
+    int n = 0;
+    for (int i = 0; i < mLists.length; i++) {
+      n += mLists[i].Size();
+    }
+    return n;
+  }
+
+  /** Producer: total command capacity of all three lists. */
+  public int TotalCapacity() {
+    int n = 0;
+    for (int i = 0; i < mLists.length; i++) {
+      n += mLists[i].Capacity();
+    }
+    return n;
+  }
+
+  /** Consumer: the most recently acquired frame. */
+  public RenderCommandList GetFront() {
+    return mLists[mFront];
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tulrich.flingers;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays vibration pulses from a background thread, so the game loop
+ * never makes the (IPC) call to the vibrator itself.
+ *
+ * Pulse() only records the pulse in a per-type slot and wakes the
+ * dispatcher; it takes no lock and allocates nothing.  The dispatcher
+ * waits a short window for more pulses, then plays one vibration as
+ * long as the longest pending pulse.  Pulses of a type that fired less
+ * than its minimum interval ago are dropped, so e.g. a burst of band
+ * stretch ticks comes out as a steady buzz of distinct ticks.
+ */
+class HapticsDispatcher {
+  /** Does the actual vibrating. */
+  interface Sink {
+    void Vibrate(long millis);
+  }
+
+  private final Sink mSink;
+  private final long[] mMinIntervalNanos;
+  private final long mWindowNanos;
+  private final Thread mThread;
+  private volatile boolean mShutdown = false;
+
+  // Longest pending pulse per type, in ms; 0 if none.
+  private final AtomicLongArray mPending;
+
+  // Dispatcher thread only.
+  private final long[] mLastFired;
+
+  // Atomic, since Reset() runs on another thread.
+  private final AtomicInteger mRequests = new AtomicInteger(0);
+  private final AtomicInteger mVibrations = new AtomicInteger(0);
+  private final AtomicInteger mDropped = new AtomicInteger(0);
+
+  /**
+   * @param minIntervalMillis per pulse type, the least time between
+   *        two vibrations of that type
+   * @param windowMillis how long to wait for more pulses to merge
+   */
+  public HapticsDispatcher(Sink sink, long[] minIntervalMillis, long windowMillis) {
+    mSink = sink;
+    int n = minIntervalMillis.length;
+    mMinIntervalNanos = new long[n];
+    mLastFired = new long[n];
+    mPending = new AtomicLongArray(n);
+    long now = System.nanoTime();
+    for (int i = 0; i < n; i++) {
+      mMinIntervalNanos[i] = minIntervalMillis[i] * 1000000;
+      mLastFired[i] = now - mMinIntervalNanos[i];
+    }
+    mWindowNanos = windowMillis * 1000000;
+
+    mThread = new Thread("Haptics") {
+      @Override
+      public void run() {
+        DispatchLoop();
+      }
+    };
+    mThread.setDaemon(true);
+    mThread.setPriority(Thread.MIN_PRIORITY);
+    mThread.start();
+  }
+
+  /** Asks for a vibration of millis, of pulse type type.  Any thread. */
+  public void Pulse(int type, long millis) {
+    mRequests.incrementAndGet();
+    for (;;) {
+      long pending = mPending.get(type);
+      if (pending >= millis || mPending.compareAndSet(type, pending, millis)) {
+        break;
+      }
+    }
+    LockSupport.unpark(mThread);
+  }
+
+  /** Stops the dispatcher thread; pending pulses are dropped. */
+  public void Shutdown() {
+    mShutdown = true;
+    LockSupport.unpark(mThread);
+  }
+
+  private boolean AnyPending() {
+    for (int i = 0; i < mPending.length(); i++) {
+      if (mPending.get(i) != 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void DispatchLoop() {
+    while (!mShutdown) {
+      if (!AnyPending()) {
+        LockSupport.park(this);
+        continue;
+      }
+      // Let pulses that arrive close together merge into one.  Each
+      // Pulse() unparks us, so wait out the window by deadline.
+      long deadline = System.nanoTime() + mWindowNanos;
+      long now;
+      while ((now = System.nanoTime()) < deadline && !mShutdown) {
+        LockSupport.parkNanos(this, deadline - now);
+      }
+
+      long longest = 0;
+      for (int i = 0; i < mPending.length(); i++) {
+        long millis = mPending.getAndSet(i, 0);
+        if (millis == 0) {
+          continue;
+        }
+        if (now - mLastFired[i] < mMinIntervalNanos[i]) {
+          mDropped.incrementAndGet();
+          continue;
+        }
+        mLastFired[i] = now;
+        longest = Math.max(longest, millis);
+      }
+      if (longest > 0 && !mShutdown) {
+        mSink.Vibrate(longest);
+        mVibrations.incrementAndGet();
+      }
+    }
+  }
+
+  public void Reset() {
+    mRequests.set(0);
+    mVibrations.set(0);
+    mDropped.set(0);
+  }
+
+  /** Returns a one-line summary, like "haptics pulses=120 vibrations=30 dropped=12". */
+  public String Report() {
+    StringBuilder sb = new StringBuilder(64);
+    sb.append("haptics pulses=").append(mRequests.get());
+    sb.append(" vibrations=").append(mVibrations.get());
+    sb.append(" dropped=").append(mDropped.get());
+    return sb.toString();
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tulrich.flingers;
+
+/**
+ * Fixed-bucket histogram of durations.  All storage is allocated up
+ * front, so Add() is cheap enough to call every frame.
+ *
+ * Buckets are linear, bucketNanos wide; anything past the last bucket
+ * lands in an overflow bucket, for which the exact max stands in.
+ */
+class Histogram {
+  private final long mBucketNanos;
+  private final int[] mCounts;
+  private int mTotal = 0;
+  private long mMax = 0;
+
+  public Histogram(int numBuckets, long bucketNanos) {
+    mBucketNanos = bucketNanos;
+    mCounts = new int[numBuckets + 1];
+  }
+
+  public void Add(long nanos) {
+    int i = (int) Math.min(mCounts.length - 1, Math.max(0, nanos / mBucketNanos));
+    mCounts[i]++;
+    mTotal++;
+    if (nanos > mMax) {
+      mMax = nanos;
+    }
+  }
+
+  public void Reset() {
+    for (int i = 0; i < mCounts.length; i++) {
+      mCounts[i] = 0;
+    }
+    mTotal = 0;
+    mMax = 0;
+  }
+
+  public int Count() {
+    return mTotal;
+  }
+
+  public long Max() {
+    return mMax;
+  }
+
+  /**
+   * Returns an upper bound on the p'th percentile (0 < p <= 100), to
+   * bucket resolution; 0 if empty.
+   */
+  public long Percentile(float p) {
+    if (mTotal == 0) {
+      return 0;
+    }
+    int rank = (int) Math.ceil(mTotal * p / 100.0f);
+    int seen = 0;
+    for (int i = 0; i < mCounts.length - 1; i++) {
+      seen += mCounts[i];
+      if (seen >= rank) {
+        return Math.min(mMax, (i + 1) * mBucketNanos);
+      }
+    }
+    return mMax;
+  }
+
+  /** Appends nanos as milliseconds, to two decimals; avoids String.format. */
+  public static void AppendMillis(StringBuilder sb, long nanos) {
+    long hundredths = (nanos + 5000) / 10000;
+    sb.append(hundredths / 100).append('.');
+    long frac = hundredths % 100;
+    if (frac < 10) {
+      sb.append('0');
+    }
+    sb.append(frac);
+  }
+
+  /**
+   * Appends the summary the report lines use, like
+   * " n=300 p50=0.40 p95=0.90 p99=1.20 max=2.31 ms".
+   */
+  public void AppendSummary(StringBuilder sb) {
+    sb.append(" n=").append(mTotal);
+    sb.append(" p50=");
+    AppendMillis(sb, Percentile(50));
+    sb.append(" p95=");
+    AppendMillis(sb, Percentile(95));
+    sb.append(" p99=");
+    AppendMillis(sb, Percentile(99));
+    sb.append(" max=");
+    AppendMillis(sb, mMax);
+    sb.append(" ms");
+  }
+}
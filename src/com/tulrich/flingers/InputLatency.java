@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tulrich.flingers;
+
+/**
+ * Input-to-screen latency, split at the point where the frame showing
+ * the input is recorded:
+ *
+ *   input -> record: lock waits, subtick catch-up, the frame's own
+ *                    update and draw.
+ *   input -> post:   all of the above, plus the wait in the frame
+ *                    queue, rasterizing and unlockCanvasAndPost.
+ *
+ * Times are System.nanoTime() values.  A frame is tagged with the
+ * time of the oldest input it is the first to show; the render thread
+ * calls Record() after posting it.  Reports read the histograms
+ * without locking, so they are approximate.  Reset() may be called
+ * from one other thread: it only asks for a reset, which Record()'s
+ * thread carries out before its next sample.
+ */
+class InputLatency {
+  // 1ms buckets out to 250ms.
+  private static final int NUM_BUCKETS = 250;
+  private static final long BUCKET_NANOS = 1000 * 1000;
+
+  private final Histogram mToRecord = new Histogram(NUM_BUCKETS, BUCKET_NANOS);
+  private final Histogram mToPost = new Histogram(NUM_BUCKETS, BUCKET_NANOS);
+
+  // Bumped by Reset(); Record() clears the histograms when its seen
+  // generation falls behind.
+  private volatile int mResetGeneration = 0;
+  private volatile int mSeenGeneration = 0;
+
+  /** Records one input's path to the screen.  One thread only. */
+  public void Record(long inputNanos, long recordedNanos, long postedNanos) {
+    int gen = mResetGeneration;
+    if (gen != mSeenGeneration) {
+      mToRecord.Reset();
+      mToPost.Reset();
+      mSeenGeneration = gen;
+    }
+    mToRecord.Add(recordedNanos - inputNanos);
+    mToPost.Add(postedNanos - inputNanos);
+  }
+
+  /** Input to the end of recording the frame that shows it. */
+  public Histogram ToRecord() {
+    return mToRecord;
+  }
+
+  /** Input to the post of the frame that shows it. */
+  public Histogram ToPost() {
+    return mToPost;
+  }
+
+  /** Inputs recorded since the last Reset(). */
+  public int Count() {
+    return mSeenGeneration == mResetGeneration ? mToPost.Count() : 0;
+  }
+
+  /** Starts fresh histograms, as of the next Record(). */
+  public void Reset() {
+    mResetGeneration++;
+  }
+
+  private static String Report(String name, Histogram h) {
+    StringBuilder sb = new StringBuilder(80);
+    sb.append(name);
+    h.AppendSummary(sb);
+    return sb.toString();
+  }
+
+  /** Returns a one-line summary, like "input-to-record n=40 p50=8.00 ... ms". */
+  public String ReportToRecord() {
+    return Report("input-to-record", mToRecord);
+  }
+
+  public String ReportToPost() {
+    return Report("input-to-post", mToPost);
+  }
+}
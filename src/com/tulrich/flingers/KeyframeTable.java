@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tulrich.flingers;
+
+/**
+ * Animation curves sampled ahead of time, so a pose can be looked up
+ * by normalized time instead of recomputed with trig every frame.
+ *
+ * A table holds a few channels (e.g. head offset, body height), each
+ * baked from a Curve over u in [0, 1] at a fixed number of evenly
+ * spaced keys.  Lookups interpolate linearly between keys.
+ */
+final class KeyframeTable {
+  /** A pose curve to bake, over normalized time u in [0, 1]. */
+  interface Curve {
+    float Eval(float u);
+  }
+
+  private final int mKeys;
+  private final float[][] mChannels;
+
+  /**
+   * @param channels number of curves in the table
+   * @param keys samples per curve; each channel stores keys + 1
+   *        values, so u = 1 is exact.
+   */
+  public KeyframeTable(int channels, int keys) {
+    mKeys = keys;
+    mChannels = new float[channels][keys + 1];
+  }
+
+  /** Samples curve into channel.  Call at load time. */
+  public void Bake(int channel, Curve curve) {
+    float[] values = mChannels[channel];
+    for (int i = 0; i <= mKeys; i++) {
+      values[i] = curve.Eval((float) i / mKeys);
+    }
+  }
+
+  private float Lookup(float[] values, float u) {
+    float x = u * mKeys;
+    int i = (int) x;
+    if (i >= mKeys) {
+      return values[mKeys];
+    }
+    float a = values[i];
+    return a + (values[i + 1] - a) * (x - i);
+  }
+
+  /**
+   * The value of a periodic channel at u, taken modulo 1.  The curve
+   * should have the same value at 0 and 1.
+   */
+  public float SampleWrapped(int channel, float u) {
+    u -= (float) Math.floor(u);
+    return Lookup(mChannels[channel], u);
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tulrich.flingers;
+
+/**
+ * Tuning for one level: how fast the bugs go, how many eggs appear,
+ * etc.  Built once when the level changes, so the per-target code just
+ * reads fields.
+ *
+ * ForLevel() gives the built-in difficulty curve; Parse() builds a
+ * level from a text definition, for data-driven level sets.
+ */
+final class LevelParams {
+  // Walk speed factor by level; later levels use the last entry.
+  private static final float[] WALK_SPEEDS = { 0.50f, 0.75f, 0.90f, 1.00f };
+
+  public final int mLevel;
+
+  /** Scales bug walking and munching speed. */
+  public final float mWalkSpeedFactor;
+
+  /** Seconds a bug takes to eat a flower. */
+  public final float mMunchTime;
+
+  /** Seconds a bug rests between bites. */
+  public final float mMunchPauseTime;
+
+  /** Eggs dropped in at the end of the level. */
+  public final int mEggsToAdd;
+
+  /** Eggs each adult can lay. */
+  public final int mMaxEggsToLay;
+
+  /**
+   * @param baseMunchTime munch time at a walk speed factor of 1; the
+   *        actual munch time scales inversely with the walk speed.
+   */
+  public LevelParams(int level, float walkSpeedFactor, float baseMunchTime,
+                     float munchPauseTime, int eggsToAdd, int maxEggsToLay) {
+    mLevel = level;
+    mWalkSpeedFactor = walkSpeedFactor;
+    mMunchTime = baseMunchTime / walkSpeedFactor;
+    mMunchPauseTime = munchPauseTime;
+    mEggsToAdd = eggsToAdd;
+    mMaxEggsToLay = maxEggsToLay;
+  }
+
+  /** The built-in tuning for level. */
+  public static LevelParams ForLevel(int level, float baseMunchTime) {
+    float walkSpeedFactor = WALK_SPEEDS[Math.min(level, WALK_SPEEDS.length - 1)];
+
+    float munchPauseTime;
+    if (level <= 4) {
+      munchPauseTime = 0.75f;
+    } else if (level <= 8) {
+      munchPauseTime = 0.50f;
+    } else {
+      munchPauseTime = 0.25f;
+    }
+
+    int eggsToAdd;
+    if (level <= 2) {
+      eggsToAdd = 4;
+    } else if (level <= 4) {
+      eggsToAdd = 5;
+    } else {
+      eggsToAdd = 6 + (level - 5);
+    }
+
+    int maxEggsToLay;
+    if (level <= 2) {
+      maxEggsToLay = 1;
+    } else if (level <= 4) {
+      maxEggsToLay = 2;
+    } else {
+      maxEggsToLay = Math.min(5, 2 + (level - 4) / 2);
+    }
+
+    return new LevelParams(level, walkSpeedFactor, baseMunchTime,
+                           munchPauseTime, eggsToAdd, maxEggsToLay);
+  }
+
+  /**
+   * Builds a level from a definition like "walk=0.9 pause=0.5 eggs=5
+   * lay=2".  Keys that are left out take their ForLevel() values.
+   * walk must be positive, the rest not negative.
+   *
+   * @throws IllegalArgumentException on an unknown key or bad number
+   */
+  public static LevelParams Parse(int level, String definition, float baseMunchTime) {
+    LevelParams d = ForLevel(level, baseMunchTime);
+    float walkSpeedFactor = d.mWalkSpeedFactor;
+    float munchPauseTime = d.mMunchPauseTime;
+    int eggsToAdd = d.mEggsToAdd;
+    int maxEggsToLay = d.mMaxEggsToLay;
+
+    String[] fields = definition.trim().split("\\s+");
+    for (int i = 0; i < fields.length; i++) {
+      if (fields[i].length() == 0) {
+        continue;
+      }
+      int eq = fields[i].indexOf('=');
+      if (eq < 0) {
+        throw new IllegalArgumentException("level " + level + ": expected key=value, got "
+                                           + fields[i]);
+      }
+      String key = fields[i].substring(0, eq);
+      String value = fields[i].substring(eq + 1);
+      try {
+        if (key.equals("walk")) {
+          walkSpeedFactor = Float.parseFloat(value);
+        } else if (key.equals("pause")) {
+          munchPauseTime = Float.parseFloat(value);
+        } else if (key.equals("eggs")) {
+          eggsToAdd = Integer.parseInt(value);
+        } else if (key.equals("lay")) {
+          maxEggsToLay = Integer.parseInt(value);
+        } else {
+          throw new IllegalArgumentException("level " + level + ": unknown key " + key);
+        }
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("level " + level + ": bad value " + fields[i]);
+      }
+    }
+    // Written so that NaN fails too.
+    if (!(walkSpeedFactor > 0) || Float.isInfinite(walkSpeedFactor)) {
+      throw new IllegalArgumentException("level " + level + ": walk must be positive");
+    }
+    if (!(munchPauseTime >= 0) || Float.isInfinite(munchPauseTime)) {
+      throw new IllegalArgumentException("level " + level + ": pause must not be negative");
+    }
+    if (eggsToAdd < 0) {
+      throw new IllegalArgumentException("level " + level + ": eggs must not be negative");
+    }
+    if (maxEggsToLay < 0) {
+      throw new IllegalArgumentException("level " + level + ": lay must not be negative");
+    }
+
+    return new LevelParams(level, walkSpeedFactor, baseMunchTime,
+                           munchPauseTime, eggsToAdd, maxEggsToLay);
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tulrich.flingers;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minimal parallel-for over an index range, on a fixed set of
+ * persistent worker threads.
+ *
+ * The range is cut into small chunks that the calling thread and the
+ * workers claim one at a time from a shared atomic cursor, so a
+ * thread that finishes early just grabs more; uneven per-item cost
+ * balances out without any per-call allocation.
+ */
+class ParallelFor {
+  /** The work to do for indices [begin, end). */
+  interface Body {
+    void Run(int begin, int end);
+  }
+
+  private final int mChunkSize;
+  private final Thread[] mWorkers;
+
+  // Current job, guarded by "this".  Workers snapshot these when the
+  // generation changes.
+  private int mGeneration = 0;
+  private Body mBody;
+  private int mCount;
+  private int mNumChunks;
+  private boolean mShutdown = false;
+
+  // High 32 bits: generation.  Low 32 bits: next chunk to claim.
+  private final AtomicLong mCursor = new AtomicLong(0);
+  private final AtomicInteger mDone = new AtomicInteger(0);
+  private volatile RuntimeException mFailure;
+
+  /**
+   * @param workers number of extra threads; the caller of Run() also
+   *        does work, so 0 means fully serial.
+   * @param chunkSize indices handed out per claim.
+   */
+  public ParallelFor(int workers, int chunkSize) {
+    mChunkSize = Math.max(1, chunkSize);
+    mWorkers = new Thread[Math.max(0, workers)];
+    for (int i = 0; i < mWorkers.length; i++) {
+      mWorkers[i] = new Thread("ParallelFor-" + i) {
+        @Override
+        public void run() {
+          WorkerLoop();
+        }
+      };
+      mWorkers[i].setDaemon(true);
+      mWorkers[i].start();
+    }
+  }
+
+  /** Default worker count: one per extra CPU. */
+  public static int DefaultWorkers() {
+    return Runtime.getRuntime().availableProcessors() - 1;
+  }
+
+  /**
+   * Runs body over [0, count) and returns once every index is done.
+   * Must not be called concurrently with itself.
+   */
+  public void Run(Body body, int count) {
+    int numChunks = (count + mChunkSize - 1) / mChunkSize;
+    if (mWorkers.length == 0 || numChunks <= 1) {
+      body.Run(0, count);
+      return;
+    }
+
+    int gen;
+    synchronized (this) {
+      if (mShutdown) {
+        gen = -1;
+      } else {
+        gen = ++mGeneration;
+        mBody = body;
+        mCount = count;
+        mNumChunks = numChunks;
+        mFailure = null;
+        mDone.set(0);
+        mCursor.set(((long) gen) << 32);
+        notifyAll();
+      }
+    }
+    if (gen < 0) {
+      // The workers are gone.
+      body.Run(0, count);
+      return;
+    }
+
+    RunChunks(gen, body, count, numChunks);
+
+    while (mDone.get() < numChunks) {
+      Thread.yield();
+    }
+    synchronized (this) {
+      mBody = null;
+    }
+    RuntimeException failure = mFailure;
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /** Stops the worker threads.  Run() goes serial afterwards. */
+  public void Shutdown() {
+    synchronized (this) {
+      mShutdown = true;
+      notifyAll();
+    }
+  }
+
+  private void RunChunks(int gen, Body body, int count, int numChunks) {
+    for (;;) {
+      long v = mCursor.get();
+      if ((int) (v >>> 32) != gen) {
+        return;
+      }
+      int chunk = (int) v;
+      if (chunk >= numChunks) {
+        return;
+      }
+      if (!mCursor.compareAndSet(v, v + 1)) {
+        continue;
+      }
+      int begin = chunk * mChunkSize;
+      int end = Math.min(count, begin + mChunkSize);
+      try {
+        body.Run(begin, end);
+      } catch (RuntimeException e) {
+        mFailure = e;
+      } finally {
+        mDone.incrementAndGet();
+      }
+    }
+  }
+
+  private void WorkerLoop() {
+    int seen = 0;
+    for (;;) {
+      int gen;
+      Body body;
+      int count;
+      int numChunks;
+      synchronized (this) {
+        while (!mShutdown && (mGeneration == seen || mBody == null)) {
+          try {
+            wait();
+          } catch (InterruptedException e) {
+          }
+        }
+        if (mShutdown) {
+          return;
+        }
+        gen = seen = mGeneration;
+        body = mBody;
+        count = mCount;
+        numChunks = mNumChunks;
+      }
+      RunChunks(gen, body, count, numChunks);
+    }
+  }
+}
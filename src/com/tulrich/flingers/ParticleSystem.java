@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tulrich.flingers;
+
+import java.util.Random;
+
+/**
+ * Fixed-capacity pool of short-lived ballistic particles, for splashes,
+ * bursts and puffs.
+ *
+ * Particles are stored as parallel primitive arrays, packed so the
+ * live ones are [0, Count()); a dying particle is swapped with the
+ * last.  Nothing allocates after construction.
+ *
+ * Emit() stays within a budget (at most the capacity): as the pool
+ * fills, bursts get proportionally smaller rather than cutting off,
+ * so under load every effect still shows, just sparser.
+ */
+class ParticleSystem {
+  private final float[] mX;
+  private final float[] mY;
+  private final float[] mZ;
+  private final float[] mVX;
+  private final float[] mVY;
+  private final float[] mVZ;
+  private final float[] mAge;
+  private final float[] mLife;
+  private final float[] mSize;
+  private final int[] mKind;
+  private int mCount = 0;
+  private int mBudget;
+  private int mDropped = 0;
+
+  private final Random mRandom = new Random();
+
+  public ParticleSystem(int capacity) {
+    mX = new float[capacity];
+    mY = new float[capacity];
+    mZ = new float[capacity];
+    mVX = new float[capacity];
+    mVY = new float[capacity];
+    mVZ = new float[capacity];
+    mAge = new float[capacity];
+    mLife = new float[capacity];
+    mSize = new float[capacity];
+    mKind = new int[capacity];
+    mBudget = capacity;
+  }
+
+  public int Count() {
+    return mCount;
+  }
+
+  public int Capacity() {
+    return mX.length;
+  }
+
+  /** Caps live particles at budget (clamped to the capacity). */
+  public void SetBudget(int budget) {
+    mBudget = Math.max(0, Math.min(budget, mX.length));
+  }
+
+  public int Budget() {
+    return mBudget;
+  }
+
+  /** Particles asked for but not emitted, since the last Reset(). */
+  public int Dropped() {
+    return mDropped;
+  }
+
+  /** Returns a one-line summary, like "particles live=120 budget=512 dropped=0". */
+  public String Report() {
+    StringBuilder sb = new StringBuilder(64);
+    sb.append("particles live=").append(Count());
+    sb.append(" budget=").append(Budget());
+    sb.append(" dropped=").append(Dropped());
+    return sb.toString();
+  }
+
+  public void Reset() {
+    mDropped = 0;
+  }
+
+  public void Clear() {
+    mCount = 0;
+  }
+
+  /**
+   * Emits up to count particles of kind at (x, y, z), flying outward in
+   * random directions at up to speed, and up at between 0.5 and 1
+   * times upSpeed.  They live about life seconds and start at size,
+   * shrinking to nothing.
+   */
+  public void Emit(int count, int kind, float x, float y, float z,
+                   float speed, float upSpeed, float life, float size) {
+    // Scale the burst by how much of the budget is free.
+    int free = mBudget - mCount;
+    int n = free <= 0 ? 0 : Math.max(1, (int) ((long) count * free / Math.max(1, mBudget)));
+    n = Math.min(n, free);
+    mDropped += count - Math.max(0, n);
+    for (int k = 0; k < n; k++) {
+      int i = mCount++;
+      double angle = mRandom.nextFloat() * 2 * Math.PI;
+      float v = speed * (0.3f + 0.7f * mRandom.nextFloat());
+      mX[i] = x;
+      mY[i] = y;
+      mZ[i] = z;
+      mVX[i] = v * (float) Math.cos(angle);
+      mVY[i] = v * (float) Math.sin(angle);
+      mVZ[i] = upSpeed * (0.5f + 0.5f * mRandom.nextFloat());
+      mAge[i] = 0;
+      mLife[i] = life * (0.7f + 0.6f * mRandom.nextFloat());
+      mSize[i] = size;
+      mKind[i] = kind;
+    }
+  }
+
+  /**
+   * Advances every particle by dt under gravity; particles that reach
+   * the ground stop there.  Expired ones are removed.
+   */
+  public void Update(float dt, float gravity) {
+    int i = 0;
+    while (i < mCount) {
+      float age = mAge[i] + dt;
+      if (age >= mLife[i]) {
+        Kill(i);
+        continue;  // i now holds what was the last particle
+      }
+      mAge[i] = age;
+      if (mZ[i] > 0 || mVZ[i] > 0) {
+        mX[i] += mVX[i] * dt;
+        mY[i] += mVY[i] * dt;
+        mZ[i] += mVZ[i] * dt;
+        mVZ[i] -= gravity * dt;
+        if (mZ[i] < 0) {
+          mZ[i] = 0;
+          mVZ[i] = 0;
+        }
+      }
+      i++;
+    }
+  }
+
+  private void Kill(int i) {
+    int last = --mCount;
+    mX[i] = mX[last];
+    mY[i] = mY[last];
+    mZ[i] = mZ[last];
+    mVX[i] = mVX[last];
+    mVY[i] = mVY[last];
+    mVZ[i] = mVZ[last];
+    mAge[i] = mAge[last];
+    mLife[i] = mLife[last];
+    mSize[i] = mSize[last];
+    mKind[i] = mKind[last];
+  }
+
+  public float X(int i) {
+    return mX[i];
+  }
+
+  public float Y(int i) {
+    return mY[i];
+  }
+
+  public float Z(int i) {
+    return mZ[i];
+  }
+
+  /** Current size: the start size, shrinking linearly over its life. */
+  public float Size(int i) {
+    return mSize[i] * (1 - mAge[i] / mLife[i]);
+  }
+
+  public int Kind(int i) {
+    return mKind[i];
+  }
+}
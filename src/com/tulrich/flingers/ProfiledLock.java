@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tulrich.flingers;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Reentrant lock that keeps wait and hold times per call site, and the
+ * worst stalls seen (who waited, and which site was holding the lock
+ * meanwhile).
+ *
+ * Usage, with a site constant per locking call site:
+ *
+ *   lock.Lock(SITE_TOUCH);
+ *   try {
+ *     ...
+ *   } finally {
+ *     lock.Unlock();
+ *   }
+ *
+ * Only the outermost acquisition counts; nested Lock() calls on the
+ * same thread are free and are charged to the outer site.  The stats
+ * are only written while the lock is held, so Report() etc. are exact
+ * when called under the lock, and approximate otherwise.
+ */
+class ProfiledLock {
+  /** Number of worst stalls remembered. */
+  public static final int WORST_STALLS = 8;
+
+  private final ReentrantLock mLock = new ReentrantLock();
+  private final String[] mSiteNames;
+
+  private final int[] mAcquires;
+  private final int[] mContended;
+  private final long[] mWaitNanos;
+  private final long[] mMaxWaitNanos;
+  private final long[] mHoldNanos;
+  private final long[] mMaxHoldNanos;
+
+  private final long[] mStallNanos = new long[WORST_STALLS];
+  private final int[] mStallWaiter = new int[WORST_STALLS];
+  private final int[] mStallHolder = new int[WORST_STALLS];
+
+  // Outermost holder, or -1.  Read without the lock by waiters.
+  private volatile int mHolderSite = -1;
+  private long mHoldStart;
+
+  /** @param siteNames names of the call sites, indexed by site */
+  public ProfiledLock(String[] siteNames) {
+    mSiteNames = siteNames;
+    int n = siteNames.length;
+    mAcquires = new int[n];
+    mContended = new int[n];
+    mWaitNanos = new long[n];
+    mMaxWaitNanos = new long[n];
+    mHoldNanos = new long[n];
+    mMaxHoldNanos = new long[n];
+    Reset();
+  }
+
+  public void Lock(int site) {
+    if (mLock.isHeldByCurrentThread()) {
+      mLock.lock();
+      return;
+    }
+
+    boolean contended = false;
+    long wait = 0;
+    int holder = -1;
+    if (!mLock.tryLock()) {
+      contended = true;
+      long start = System.nanoTime();
+      holder = mHolderSite;
+      mLock.lock();
+      wait = System.nanoTime() - start;
+    }
+
+    mHolderSite = site;
+    mHoldStart = System.nanoTime();
+    mAcquires[site]++;
+    if (contended) {
+      mContended[site]++;
+      mWaitNanos[site] += wait;
+      if (wait > mMaxWaitNanos[site]) {
+        mMaxWaitNanos[site] = wait;
+      }
+      RecordStall(site, holder, wait);
+    }
+  }
+
+  public void Unlock() {
+    if (mLock.getHoldCount() == 1) {
+      int site = mHolderSite;
+      long hold = System.nanoTime() - mHoldStart;
+      mHoldNanos[site] += hold;
+      if (hold > mMaxHoldNanos[site]) {
+        mMaxHoldNanos[site] = hold;
+      }
+      mHolderSite = -1;
+    }
+    mLock.unlock();
+  }
+
+  // Keeps the WORST_STALLS longest waits.
+  private void RecordStall(int waiter, int holder, long wait) {
+    int min = 0;
+    for (int i = 1; i < WORST_STALLS; i++) {
+      if (mStallNanos[i] < mStallNanos[min]) {
+        min = i;
+      }
+    }
+    if (wait > mStallNanos[min]) {
+      mStallNanos[min] = wait;
+      mStallWaiter[min] = waiter;
+      mStallHolder[min] = holder;
+    }
+  }
+
+  public int NumSites() {
+    return mSiteNames.length;
+  }
+
+  public void Reset() {
+    for (int i = 0; i < mSiteNames.length; i++) {
+      mAcquires[i] = 0;
+      mContended[i] = 0;
+      mWaitNanos[i] = 0;
+      mMaxWaitNanos[i] = 0;
+      mHoldNanos[i] = 0;
+      mMaxHoldNanos[i] = 0;
+    }
+    for (int i = 0; i < WORST_STALLS; i++) {
+      mStallNanos[i] = 0;
+      mStallWaiter[i] = -1;
+      mStallHolder[i] = -1;
+    }
+  }
+
+  private String SiteName(int site) {
+    return site < 0 ? "?" : mSiteNames[site];
+  }
+
+  /**
+   * Returns a one-line summary of site, like
+   * "lock touch n=120 contended=14 wait avg=1.20 max=9.80 hold avg=0.02 max=0.05 ms",
+   * or null if the site hasn't taken the lock.
+   */
+  public String Report(int site) {
+    int n = mAcquires[site];
+    if (n == 0) {
+      return null;
+    }
+    StringBuilder sb = new StringBuilder(96);
+    sb.append("lock ").append(mSiteNames[site]).append(" n=").append(n);
+    sb.append(" contended=").append(mContended[site]);
+    sb.append(" wait avg=");
+    Histogram.AppendMillis(sb, mWaitNanos[site] / n);
+    sb.append(" max=");
+    Histogram.AppendMillis(sb, mMaxWaitNanos[site]);
+    sb.append(" hold avg=");
+    Histogram.AppendMillis(sb, mHoldNanos[site] / n);
+    sb.append(" max=");
+    Histogram.AppendMillis(sb, mMaxHoldNanos[site]);
+    sb.append(" ms");
+    return sb.toString();
+  }
+
+  /**
+   * Returns the worst stalls, longest first, like
+   * "lock stalls touch<frame 9.80, key-down<frame 4.10 ms".
+   */
+  public String ReportStalls() {
+    StringBuilder sb = new StringBuilder(128);
+    sb.append("lock stalls");
+    boolean[] done = new boolean[WORST_STALLS];
+    boolean any = false;
+    for (int pass = 0; pass < WORST_STALLS; pass++) {
+      // Selection by descending wait; the table is tiny.
+      int best = -1;
+      for (int i = 0; i < WORST_STALLS; i++) {
+        if (!done[i] && mStallWaiter[i] != -1
+            && (best == -1 || mStallNanos[i] > mStallNanos[best])) {
+          best = i;
+        }
+      }
+      if (best == -1) {
+        break;
+      }
+      sb.append(any ? ", " : " ");
+      sb.append(SiteName(mStallWaiter[best])).append('<');
+      sb.append(SiteName(mStallHolder[best])).append(' ');
+      Histogram.AppendMillis(sb, mStallNanos[best]);
+      done[best] = true;
+      any = true;
+    }
+    sb.append(any ? " ms" : " none");
+    return sb.toString();
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tulrich.flingers;
+
+/**
+ * Picks a rendering quality tier from recent frame times, to hold a
+ * target frame rate on slow devices.
+ *
+ * Tiers run from 0 (best) to the last name given (cheapest); what each
+ * one turns off is up to the caller.  The controller averages the last
+ * WINDOW frame intervals, steps down a tier when the average is over
+ * budget, and steps back up only when it is well under, and has been
+ * for a while.  After any change it waits for a full window of new
+ * frames before judging again, so the tiers don't oscillate.
+ */
+class QualityController {
+  /** Frames averaged over. */
+  public static final int WINDOW = 30;
+
+  // Drop a tier above this fraction of the budget...
+  private static final float DEGRADE_RATIO = 1.15f;
+  // ...and raise one below this, held for UPGRADE_WINDOWS full windows.
+  private static final float UPGRADE_RATIO = 0.70f;
+  private static final int UPGRADE_WINDOWS = 3;
+
+  // Longer gaps (pauses, stalls while the app is in the background)
+  // say nothing about rendering cost; they restart the window.
+  private static final long MAX_SAMPLE_NANOS = 250L * 1000 * 1000;
+
+  private final String[] mTierNames;
+  private final long mBudgetNanos;
+  private final long[] mSamples = new long[WINDOW];
+  private int mNext = 0;
+  private int mCount = 0;
+  private long mSum = 0;
+  private int mGoodWindows = 0;
+  private int mTier = 0;
+  private long mChangeAverage = 0;
+
+  /**
+   * @param tierNames names of the tiers, best first, for logs
+   * @param budgetNanos target frame interval
+   */
+  public QualityController(String[] tierNames, long budgetNanos) {
+    mTierNames = tierNames;
+    mBudgetNanos = budgetNanos;
+  }
+
+  public int Tier() {
+    return mTier;
+  }
+
+  public String TierName(int tier) {
+    return mTierNames[tier];
+  }
+
+  /** The window average, in ns, that caused the last tier change. */
+  public long ChangeAverageNanos() {
+    return mChangeAverage;
+  }
+
+  private void RestartWindow() {
+    mNext = 0;
+    mCount = 0;
+    mSum = 0;
+  }
+
+  /**
+   * Adds one frame's interval.  Returns true if the tier changed; the
+   * caller should then apply Tier().
+   */
+  public boolean AddFrame(long intervalNanos) {
+    if (intervalNanos <= 0 || intervalNanos > MAX_SAMPLE_NANOS) {
+      RestartWindow();
+      return false;
+    }
+    if (mCount == WINDOW) {
+      mSum -= mSamples[mNext];
+    } else {
+      mCount++;
+    }
+    mSamples[mNext] = intervalNanos;
+    mSum += intervalNanos;
+    mNext = (mNext + 1) % WINDOW;
+    if (mCount < WINDOW) {
+      return false;
+    }
+
+    long average = mSum / WINDOW;
+    if (average > mBudgetNanos * DEGRADE_RATIO) {
+      mGoodWindows = 0;
+      if (mTier < mTierNames.length - 1) {
+        mTier++;
+        mChangeAverage = average;
+        RestartWindow();
+        return true;
+      }
+      return false;
+    }
+    if (average < mBudgetNanos * UPGRADE_RATIO && mTier > 0) {
+      // Count whole windows of good frames, not overlapping ones.
+      if (mNext == 0) {
+        mGoodWindows++;
+      }
+      if (mGoodWindows >= UPGRADE_WINDOWS) {
+        mGoodWindows = 0;
+        mTier--;
+        mChangeAverage = average;
+        RestartWindow();
+        return true;
+      }
+    } else {
+      mGoodWindows = 0;
+    }
+    return false;
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tulrich.flingers;
+
+/**
+ * RenderSink that records draw calls, so a frame can be built on one
+ * thread and rasterized later on another via Replay().
+ *
+ * Paint state is copied into the list when a command is recorded, so
+ * the caller may change its RenderPaints (e.g. band stroke width)
+ * while the list is being replayed elsewhere.  Storage is kept in
+ * primitive arrays that only grow; a warmed-up list records a frame
+ * without allocating.
+ */
+class RenderCommandList implements RenderSink {
+  private static final int OP_CIRCLE = 0;
+  private static final int OP_OVAL = 1;
+  private static final int OP_LINE = 2;
+  private static final int OP_RECT = 3;
+  private static final int OP_TEXT = 4;
+
+  private static final int FLAG_ANTI_ALIAS = 1;
+  private static final int FLAG_ROUND_CAP = 2;
+
+  // Floats per command: four coordinates, stroke width, text size.
+  private static final int FLOATS = 6;
+
+  private int mCount = 0;
+  private int[] mOps = new int[64];
+  private int[] mColors = new int[64];
+  private int[] mFlags = new int[64];
+  private float[] mArgs = new float[64 * FLOATS];
+  private String[] mTexts = new String[64];
+
+  private final RenderSink mMeasurer;
+  private final RenderPaint mReplayPaint = new RenderPaint();
+
+  // Latency tag: System.nanoTime() of the oldest input this frame is
+  // the first to show (0 if none), and of the end of recording.
+  private long mInputNanos = 0;
+  private long mRecordedNanos = 0;
+
+  /**
+   * @param measurer answers MeasureText() while recording; it is
+   *        never drawn into.
+   */
+  public RenderCommandList(RenderSink measurer) {
+    mMeasurer = measurer;
+  }
+
+  public void Clear() {
+    for (int i = 0; i < mCount; i++) {
+      mTexts[i] = null;
+    }
+    mCount = 0;
+    mInputNanos = 0;
+  }
+
+  public int Size() {
+    return mCount;
+  }
+
+  /** Tags the frame for input latency measurement; see InputLatency. */
+  public void SetLatencyTag(long inputNanos, long recordedNanos) {
+    mInputNanos = inputNanos;
+    mRecordedNanos = recordedNanos;
+  }
+
+  public long InputNanos() {
+    return mInputNanos;
+  }
+
+  public long RecordedNanos() {
+    return mRecordedNanos;
+  }
+
+  /** Commands that fit before the storage has to grow. */
+  public int Capacity() {
+    return mOps.length;
+  }
+
+  private void Grow() {
+    int n = mOps.length * 2;
+    int[] ops = new int[n];
+    int[] colors = new int[n];
+    int[] flags = new int[n];
+    float[] args = new float[n * FLOATS];
+    String[] texts = new String[n];
+    System.arraycopy(mOps, 0, ops, 0, mCount);
+    System.arraycopy(mColors, 0, colors, 0, mCount);
+    System.arraycopy(mFlags, 0, flags, 0, mCount);
+    System.arraycopy(mArgs, 0, args, 0, mCount * FLOATS);
+    System.arraycopy(mTexts, 0, texts, 0, mCount);
+    mOps = ops;
+    mColors = colors;
+    mFlags = flags;
+    mArgs = args;
+    mTexts = texts;
+  }
+
+  private void Add(int op, float a, float b, float c, float d,
+                   RenderPaint paint, String text) {
+    if (mCount >= mOps.length) {
+      Grow();
+    }
+    int i = mCount++;
+    mOps[i] = op;
+    mColors[i] = paint.mColor;
+    mFlags[i] = (paint.mAntiAlias ? FLAG_ANTI_ALIAS : 0)
+                | (paint.mRoundCap ? FLAG_ROUND_CAP : 0);
+    int k = i * FLOATS;
+    mArgs[k] = a;
+    mArgs[k + 1] = b;
+    mArgs[k + 2] = c;
+    mArgs[k + 3] = d;
+    mArgs[k + 4] = paint.mStrokeWidth;
+    mArgs[k + 5] = paint.mTextSize;
+    mTexts[i] = text;
+  }
+
+  public void DrawCircle(float x, float y, float radius, RenderPaint paint) {
+    Add(OP_CIRCLE, x, y, radius, 0, paint, null);
+  }
+
+  public void DrawOval(float left, float top, float right, float bottom,
+                       RenderPaint paint) {
+    Add(OP_OVAL, left, top, right, bottom, paint, null);
+  }
+
+  public void DrawLine(float x0, float y0, float x1, float y1,
+                       RenderPaint paint) {
+    Add(OP_LINE, x0, y0, x1, y1, paint, null);
+  }
+
+  public void DrawRect(float left, float top, float right, float bottom,
+                       RenderPaint paint) {
+    Add(OP_RECT, left, top, right, bottom, paint, null);
+  }
+
+  public void DrawText(String text, float x, float y, RenderPaint paint) {
+    Add(OP_TEXT, x, y, 0, 0, paint, text);
+  }
+
+  public float MeasureText(String text, RenderPaint paint) {
+    return mMeasurer.MeasureText(text, paint);
+  }
+
+  /** Issues the recorded commands, in order, to sink. */
+  public void Replay(RenderSink sink) {
+    RenderPaint p = mReplayPaint;
+    for (int i = 0; i < mCount; i++) {
+      int k = i * FLOATS;
+      p.mColor = mColors[i];
+      p.mAntiAlias = (mFlags[i] & FLAG_ANTI_ALIAS) != 0;
+      p.mRoundCap = (mFlags[i] & FLAG_ROUND_CAP) != 0;
+      p.mStrokeWidth = mArgs[k + 4];
+      p.mTextSize = mArgs[k + 5];
+      switch (mOps[i]) {
+        case OP_CIRCLE:
+          sink.DrawCircle(mArgs[k], mArgs[k + 1], mArgs[k + 2], p);
+          break;
+        case OP_OVAL:
+          sink.DrawOval(mArgs[k], mArgs[k + 1], mArgs[k + 2], mArgs[k + 3], p);
+          break;
+        case OP_LINE:
+          sink.DrawLine(mArgs[k], mArgs[k + 1], mArgs[k + 2], mArgs[k + 3], p);
+          break;
+        case OP_RECT:
+          sink.DrawRect(mArgs[k], mArgs[k + 1], mArgs[k + 2], mArgs[k + 3], p);
+          break;
+        case OP_TEXT:
+          sink.DrawText(mTexts[i], mArgs[k], mArgs[k + 1], p);
+          break;
+      }
+    }
+  }
+}
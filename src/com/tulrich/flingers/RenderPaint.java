@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2007 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tulrich.flingers;
+
+/**
+ * Backend-neutral stand-in for android.graphics.Paint: just the
+ * bits of style the game actually uses.  Setter names follow Paint so
+ * the setup code reads the same.
+ */
+class RenderPaint {
+  /** Color as 0xAARRGGBB. */
+  public int mColor = 0xff000000;
+  public boolean mAntiAlias = false;
+  /** Line width in pixels; 0 means hairline. */
+  public float mStrokeWidth = 0;
+  public boolean mRoundCap = false;
+  public float mTextSize = 12.0f;
+
+  public void setARGB(int a, int r, int g, int b) {
+    mColor = ((a & 0xff) << 24) | ((r & 0xff) << 16) | ((g & 0xff) << 8) | (b & 0xff);
+  }
+
+  public void setAntiAlias(boolean aa) {
+    mAntiAlias = aa;
+  }
+
+  public void setStrokeWidth(float width) {
+    mStrokeWidth = width;
+  }
+
+  public void setRoundCap(boolean round) {
+    mRoundCap = round;
+  }
+
+  public void setTextSize(float size) {
+    mTextSize = size;
+  }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2007 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tulrich.flingers;
+
+/**
+ * The handful of drawing primitives the game uses.  The draw code
+ * talks to this instead of android.graphics.Canvas, so a frame can
+ * be rendered on-device (CanvasRenderSink) or headless
+ * (SoftwareRasterizer).
+ *
+ * All coordinates are in screen pixels.
+ */
+interface RenderSink {
+  void DrawCircle(float x, float y, float radius, RenderPaint paint);
+
+  void DrawOval(float left, float top, float right, float bottom,
+                RenderPaint paint);
+
+  void DrawLine(float x0, float y0, float x1, float y1, RenderPaint paint);
+
+  void DrawRect(float left, float top, float right, float bottom,
+                RenderPaint paint);
+
+  /** Draws text with its baseline starting at (x, y). */
+  void DrawText(String text, float x, float y, RenderPaint paint);
+
+  /** Returns the width of text in pixels, as DrawText would draw it. */
+  float MeasureText(String text, RenderPaint paint);
+}
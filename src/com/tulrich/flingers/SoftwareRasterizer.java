@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tulrich.flingers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Pure-Java RenderSink that rasterizes into an int[] framebuffer of
+ * 0xAARRGGBB pixels.  Doesn't need Android, so frames can be rendered,
+ * timed and compared against golden images on a desktop JVM.
+ *
+ * Pixels are point-sampled at their centers (no anti-aliasing), and
+ * colors are blended src-over using the paint's alpha.  Text uses a
+ * tiny block font that only knows digits and " -.=:", which covers the
+ * score labels; any other character (e.g. the profiler overlay's
+ * letters) draws as a solid block, so it still shows up where it is.
+ */
+class SoftwareRasterizer implements RenderSink {
+  private final int mWidth;
+  private final int mHeight;
+  private final int[] mPixels;
+
+  public SoftwareRasterizer(int width, int height) {
+    mWidth = width;
+    mHeight = height;
+    mPixels = new int[width * height];
+  }
+
+  public int GetWidth() {
+    return mWidth;
+  }
+
+  public int GetHeight() {
+    return mHeight;
+  }
+
+  /** The framebuffer, row-major, 0xAARRGGBB. */
+  public int[] GetPixels() {
+    return mPixels;
+  }
+
+  public void Clear(int color) {
+    for (int i = 0; i < mPixels.length; i++) {
+      mPixels[i] = color;
+    }
+  }
+
+  /** Writes the framebuffer as a binary PPM (P6), ignoring alpha. */
+  public void WritePpm(OutputStream out) throws IOException {
+    byte[] header = ("P6\n" + mWidth + " " + mHeight + "\n255\n").getBytes("US-ASCII");
+    out.write(header);
+    byte[] row = new byte[mWidth * 3];
+    for (int y = 0; y < mHeight; y++) {
+      for (int x = 0; x < mWidth; x++) {
+        int c = mPixels[y * mWidth + x];
+        row[x * 3] = (byte) (c >> 16);
+        row[x * 3 + 1] = (byte) (c >> 8);
+        row[x * 3 + 2] = (byte) c;
+      }
+      out.write(row);
+    }
+  }
+
+  // Blends color into pixels [x0, x1) of row y.  Clips.
+  private void Span(int y, int x0, int x1, int color) {
+    if (y < 0 || y >= mHeight) {
+      return;
+    }
+    if (x0 < 0) {
+      x0 = 0;
+    }
+    if (x1 > mWidth) {
+      x1 = mWidth;
+    }
+    int alpha = color >>> 24;
+    int base = y * mWidth;
+    if (alpha == 255) {
+      for (int x = x0; x < x1; x++) {
+        mPixels[base + x] = color;
+      }
+    } else if (alpha > 0) {
+      for (int x = x0; x < x1; x++) {
+        mPixels[base + x] = Blend(mPixels[base + x], color, alpha);
+      }
+    }
+  }
+
+  private static int Blend(int dst, int src, int alpha) {
+    int inv = 255 - alpha;
+    int r = (((src >> 16) & 0xff) * alpha + ((dst >> 16) & 0xff) * inv) / 255;
+    int g = (((src >> 8) & 0xff) * alpha + ((dst >> 8) & 0xff) * inv) / 255;
+    int b = ((src & 0xff) * alpha + (dst & 0xff) * inv) / 255;
+    int a = alpha + ((dst >>> 24) * inv) / 255;
+    return (a << 24) | (r << 16) | (g << 8) | b;
+  }
+
+  // First pixel index whose center is >= v.
+  private static int CeilCenter(float v) {
+    return (int) Math.ceil(v - 0.5f);
+  }
+
+  public void DrawCircle(float x, float y, float radius, RenderPaint paint) {
+    DrawOval(x - radius, y - radius, x + radius, y + radius, paint);
+  }
+
+  public void DrawOval(float left, float top, float right, float bottom,
+                       RenderPaint paint) {
+    float rx = (right - left) / 2;
+    float ry = (bottom - top) / 2;
+    if (rx <= 0 || ry <= 0) {
+      return;
+    }
+    float cx = left + rx;
+    float cy = top + ry;
+    int y0 = Math.max(0, CeilCenter(top));
+    int y1 = Math.min(mHeight, CeilCenter(bottom));
+    for (int py = y0; py < y1; py++) {
+      float dy = (py + 0.5f - cy) / ry;
+      float w2 = 1 - dy * dy;
+      if (w2 <= 0) {
+        continue;
+      }
+      float half = rx * (float) Math.sqrt(w2);
+      Span(py, CeilCenter(cx - half), CeilCenter(cx + half), paint.mColor);
+    }
+  }
+
+  public void DrawRect(float left, float top, float right, float bottom,
+                       RenderPaint paint) {
+    int x0 = CeilCenter(left);
+    int x1 = CeilCenter(right);
+    int y0 = Math.max(0, CeilCenter(top));
+    int y1 = Math.min(mHeight, CeilCenter(bottom));
+    for (int py = y0; py < y1; py++) {
+      Span(py, x0, x1, paint.mColor);
+    }
+  }
+
+  public void DrawLine(float x0, float y0, float x1, float y1,
+                       RenderPaint paint) {
+    // A pixel is covered if its center is within half the stroke width
+    // of the segment.  Round caps extend that past the endpoints.
+    float half = Math.max(1.0f, paint.mStrokeWidth) / 2;
+    float dx = x1 - x0;
+    float dy = y1 - y0;
+    float len2 = dx * dx + dy * dy;
+    int minX = Math.max(0, CeilCenter(Math.min(x0, x1) - half));
+    int maxX = Math.min(mWidth, CeilCenter(Math.max(x0, x1) + half));
+    int minY = Math.max(0, CeilCenter(Math.min(y0, y1) - half));
+    int maxY = Math.min(mHeight, CeilCenter(Math.max(y0, y1) + half));
+    float half2 = half * half;
+    for (int py = minY; py < maxY; py++) {
+      float ry = py + 0.5f - y0;
+      int start = -1;
+      for (int px = minX; px <= maxX; px++) {
+        boolean in = false;
+        if (px < maxX) {
+          float rx = px + 0.5f - x0;
+          float t = len2 > 0 ? (rx * dx + ry * dy) / len2 : 0;
+          if (t >= 0 && t <= 1) {
+            float ex = rx - t * dx;
+            float ey = ry - t * dy;
+            in = ex * ex + ey * ey <= half2;
+          } else if (paint.mRoundCap) {
+            t = t < 0 ? 0 : 1;
+            float ex = rx - t * dx;
+            float ey = ry - t * dy;
+            in = ex * ex + ey * ey <= half2;
+          }
+        }
+        if (in && start < 0) {
+          start = px;
+        } else if (!in && start >= 0) {
+          Span(py, start, px, paint.mColor);
+          start = -1;
+        }
+      }
+    }
+  }
+
+  // 3x5 glyphs, one row per 3 bits, top row first.
+  private static final int[] DIGIT_GLYPHS = {
+    07, 05, 05, 05, 07,  // 0
+    02, 06, 02, 02, 07,  // 1
+    07, 01, 07, 04, 07,  // 2
+    07, 01, 07, 01, 07,  // 3
+    05, 05, 07, 01, 01,  // 4
+    07, 04, 07, 01, 07,  // 5
+    07, 04, 07, 05, 07,  // 6
+    07, 01, 01, 01, 01,  // 7
+    07, 05, 07, 05, 07,  // 8
+    07, 05, 07, 01, 07,  // 9
+  };
+  private static final int MINUS_ROW = 2;
+
+  // Row of ch's glyph.
+  private static int GlyphRow(char ch, int row) {
+    if (ch >= '0' && ch <= '9') {
+      return DIGIT_GLYPHS[(ch - '0') * 5 + row];
+    }
+    switch (ch) {
+      case ' ':
+        return 0;
+      case '-':
+        return row == MINUS_ROW ? 07 : 0;
+      case '.':
+        return row == 4 ? 02 : 0;
+      case '=':
+        return row == 1 || row == 3 ? 07 : 0;
+      case ':':
+        return row == 1 || row == 3 ? 02 : 0;
+      default:
+        return 07;
+    }
+  }
+
+  public void DrawText(String text, float x, float y, RenderPaint paint) {
+    float cell = paint.mTextSize / 6;
+    float top = y - 5 * cell;
+    for (int i = 0; i < text.length(); i++) {
+      char ch = text.charAt(i);
+      float left = x + i * 4 * cell;
+      for (int row = 0; row < 5; row++) {
+        int bits = GlyphRow(ch, row);
+        for (int col = 0; col < 3; col++) {
+          if ((bits & (4 >> col)) != 0) {
+            DrawRect(left + col * cell, top + row * cell,
+                     left + (col + 1) * cell, top + (row + 1) * cell, paint);
+          }
+        }
+      }
+    }
+  }
+
+  public float MeasureText(String text, RenderPaint paint) {
+    // Glyphs are 3 cells wide plus one cell of spacing.
+    return text.length() * 4 * (paint.mTextSize / 6);
+  }
+}
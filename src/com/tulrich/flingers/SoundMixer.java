@@ -0,0 +1,407 @@
+/*
+ * Copyright (C) 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tulrich.flingers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Small software mixer for sound effects.
+ *
+ * Effects are loaded up front as 16-bit mono PCM.  The game thread
+ * triggers them with Play(), which only writes a slot in a
+ * single-producer ring (and unparks the mixer if it's idle); the
+ * mixer thread picks the triggers up at the start of each buffer,
+ * mixes at most a fixed number of voices into a fixed-size buffer,
+ * and hands it to a Sink.  The sink's Write() paces the mixer: on
+ * device it blocks in AudioTrack, and the off-device sinks sleep for
+ * the buffer's duration.  Nothing on the mixing path allocates.
+ *
+ * With no voice playing and no trigger pending, the mixer pauses its
+ * sink and parks; Play() wakes it.  So a silent game (e.g. paused)
+ * costs no audio work at all.
+ *
+ * Mix cost per buffer, and the delay from Play() to the buffer that
+ * starts the sound, are kept in histograms.  Like the other
+ * profilers, reports read them without locking; Reset() leaves the
+ * clearing to the mixer thread.
+ */
+class SoundMixer {
+  /** Where mixed buffers go.  Called only from the mixer thread. */
+  interface Sink {
+    /** Plays count samples of pcm; may block until there's room. */
+    void Write(short[] pcm, int count);
+
+    /**
+     * The mixer is going idle: output may stop once what's been
+     * written has played.  The next Write() resumes.
+     */
+    void Pause();
+
+    void Close();
+  }
+
+  public static final int SAMPLE_RATE = 22050;
+
+  // Pending triggers; a power of two.
+  private static final int TRIGGERS = 32;
+
+  private final ArrayList<short[]> mSounds = new ArrayList<short[]>();
+
+  // Voices; mVoiceSound is -1 when free.
+  private final int[] mVoiceSound;
+  private final int[] mVoicePos;
+  private final float[] mVoiceGain;
+
+  private final int[] mAccum;
+  private final short[] mOut;
+
+  // Trigger ring.  Play() writes slots and then bumps mTriggerHead; the
+  // mixer reads slots and then bumps mTriggerTail.
+  private final int[] mTriggerSound = new int[TRIGGERS];
+  private final float[] mTriggerGain = new float[TRIGGERS];
+  private final long[] mTriggerNanos = new long[TRIGGERS];
+  private volatile int mTriggerHead = 0;
+  private volatile int mTriggerTail = 0;
+  private int mTriggersDropped = 0;
+
+  // 10us buckets out to 2ms.
+  private final Histogram mMixNanos = new Histogram(200, 10 * 1000);
+  // 1ms buckets out to 100ms.
+  private final Histogram mTriggerDelay = new Histogram(100, 1000 * 1000);
+
+  private Thread mThread;
+  private volatile boolean mShutdown = false;
+
+  // True while the mixer thread is parked, or about to park, for lack
+  // of anything to play.
+  private volatile boolean mIdle = false;
+
+  // Bumped by Reset(); the mixer thread clears its histograms when it
+  // sees the bump.
+  private volatile int mResetGeneration = 0;
+  private int mSeenGeneration = 0;
+
+  /**
+   * @param voices most sounds playing at once; a new sound steals the
+   *        voice that is furthest along
+   * @param bufferFrames samples per mixed buffer
+   */
+  public SoundMixer(int voices, int bufferFrames) {
+    mVoiceSound = new int[voices];
+    mVoicePos = new int[voices];
+    mVoiceGain = new float[voices];
+    for (int i = 0; i < voices; i++) {
+      mVoiceSound[i] = -1;
+    }
+    mAccum = new int[bufferFrames];
+    mOut = new short[bufferFrames];
+  }
+
+  /** Adds an effect and returns its id.  Call before Start(). */
+  public int Load(short[] pcm) {
+    mSounds.add(pcm);
+    return mSounds.size() - 1;
+  }
+
+  /** Starts the mixer thread, feeding sink. */
+  public void Start(final Sink sink) {
+    mThread = new Thread("SoundMixer") {
+      @Override
+      public void run() {
+        try {
+          while (!mShutdown) {
+            TakeReset();
+            if (!Busy()) {
+              sink.Pause();
+              Sleep();
+              continue;
+            }
+            MixBuffer();
+            sink.Write(mOut, mOut.length);
+          }
+        } finally {
+          sink.Close();
+        }
+      }
+    };
+    mThread.setDaemon(true);
+    mThread.setPriority(Thread.MAX_PRIORITY);
+    mThread.start();
+  }
+
+  /** Stops the mixer thread; it closes its sink on the way out. */
+  public void Shutdown() {
+    mShutdown = true;
+    if (mThread != null) {
+      LockSupport.unpark(mThread);
+    }
+  }
+
+  // Wakes the mixer thread if it's idle.
+  private void Wake() {
+    if (mIdle && mThread != null) {
+      LockSupport.unpark(mThread);
+    }
+  }
+
+  // Whether any voice is playing or any trigger is waiting.
+  private boolean Busy() {
+    if (mTriggerHead != mTriggerTail) {
+      return true;
+    }
+    for (int v = 0; v < mVoiceSound.length; v++) {
+      if (mVoiceSound[v] >= 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // Parks until Play(), Reset() or Shutdown().  Play() checks mIdle
+  // after publishing its trigger, and we check for triggers after
+  // setting mIdle, so one of us always sees the other.
+  private void Sleep() {
+    mIdle = true;
+    while (!mShutdown && mTriggerHead == mTriggerTail
+           && mResetGeneration == mSeenGeneration) {
+      LockSupport.park(this);
+    }
+    mIdle = false;
+  }
+
+  private void TakeReset() {
+    int gen = mResetGeneration;
+    if (gen != mSeenGeneration) {
+      mMixNanos.Reset();
+      mTriggerDelay.Reset();
+      mSeenGeneration = gen;
+    }
+  }
+
+  /**
+   * Starts sound at gain (1 = as loaded).  Only one thread may call
+   * this.  Returns false, dropping the sound, if the trigger ring is
+   * full.
+   */
+  public boolean Play(int sound, float gain) {
+    int head = mTriggerHead;
+    if (head - mTriggerTail >= TRIGGERS) {
+      mTriggersDropped++;
+      return false;
+    }
+    int i = head & (TRIGGERS - 1);
+    mTriggerSound[i] = sound;
+    mTriggerGain[i] = gain;
+    mTriggerNanos[i] = System.nanoTime();
+    mTriggerHead = head + 1;
+    Wake();
+    return true;
+  }
+
+  // Moves pending triggers onto voices.
+  private void TakeTriggers(long now) {
+    int tail = mTriggerTail;
+    int head = mTriggerHead;
+    for (; tail != head; tail++) {
+      int i = tail & (TRIGGERS - 1);
+      int v = FreeVoice();
+      mVoiceSound[v] = mTriggerSound[i];
+      mVoicePos[v] = 0;
+      mVoiceGain[v] = mTriggerGain[i];
+      mTriggerDelay.Add(now - mTriggerNanos[i]);
+    }
+    mTriggerTail = tail;
+  }
+
+  // A free voice, or else the one furthest through its sound.
+  private int FreeVoice() {
+    int best = 0;
+    float bestDone = -1;
+    for (int v = 0; v < mVoiceSound.length; v++) {
+      if (mVoiceSound[v] < 0) {
+        return v;
+      }
+      float done = (float) mVoicePos[v] / mSounds.get(mVoiceSound[v]).length;
+      if (done > bestDone) {
+        best = v;
+        bestDone = done;
+      }
+    }
+    return best;
+  }
+
+  private void MixBuffer() {
+    long start = System.nanoTime();
+    TakeTriggers(start);
+
+    int n = mAccum.length;
+    for (int i = 0; i < n; i++) {
+      mAccum[i] = 0;
+    }
+    for (int v = 0; v < mVoiceSound.length; v++) {
+      if (mVoiceSound[v] < 0) {
+        continue;
+      }
+      short[] pcm = mSounds.get(mVoiceSound[v]);
+      int pos = mVoicePos[v];
+      int count = Math.min(n, pcm.length - pos);
+      int gain = (int) (mVoiceGain[v] * 256);
+      for (int i = 0; i < count; i++) {
+        mAccum[i] += (pcm[pos + i] * gain) >> 8;
+      }
+      pos += count;
+      if (pos >= pcm.length) {
+        mVoiceSound[v] = -1;
+      }
+      mVoicePos[v] = pos;
+    }
+    for (int i = 0; i < n; i++) {
+      int s = mAccum[i];
+      mOut[i] = (short) (s > Short.MAX_VALUE ? Short.MAX_VALUE
+                         : s < Short.MIN_VALUE ? Short.MIN_VALUE : s);
+    }
+
+    mMixNanos.Add(System.nanoTime() - start);
+  }
+
+  /**
+   * Synthesizes an effect: a sine sweeping from freq0 to freq1 Hz,
+   * blended with noise (0 = pure tone, 1 = pure noise), under a fast
+   * attack and exponential decay.  For load time only.
+   */
+  public static short[] Synth(float freq0, float freq1, float millis,
+                              float noise, float volume) {
+    int n = (int) (SAMPLE_RATE * millis / 1000);
+    short[] pcm = new short[n];
+    Random random = new Random(n);
+    double phase = 0;
+    int attack = Math.max(1, SAMPLE_RATE / 500);  // 2ms
+    for (int i = 0; i < n; i++) {
+      float u = (float) i / n;
+      float freq = freq0 + (freq1 - freq0) * u;
+      phase += 2 * Math.PI * freq / SAMPLE_RATE;
+      float tone = (float) Math.sin(phase);
+      float hiss = random.nextFloat() * 2 - 1;
+      float envelope = Math.min(1, (float) i / attack) * (float) Math.exp(-4 * u);
+      float s = (tone * (1 - noise) + hiss * noise) * envelope * volume;
+      pcm[i] = (short) (s * Short.MAX_VALUE);
+    }
+    return pcm;
+  }
+
+  /**
+   * Starts fresh stats.  Call from the Play() thread, which owns the
+   * dropped count; the mixer thread clears its histograms before its
+   * next buffer.
+   */
+  public void Reset() {
+    mTriggersDropped = 0;
+    mResetGeneration++;
+    Wake();
+  }
+
+  public Histogram MixNanos() {
+    return mMixNanos;
+  }
+
+  public Histogram TriggerDelay() {
+    return mTriggerDelay;
+  }
+
+  /**
+   * Returns a one-line summary, like
+   * "sound mix n=430 p50=0.02 ... max=0.20 ms trigger n=12 p50=4.00 ... max=12.00 ms dropped=0".
+   */
+  public String Report() {
+    StringBuilder sb = new StringBuilder(160);
+    sb.append("sound mix");
+    mMixNanos.AppendSummary(sb);
+    sb.append(" trigger");
+    mTriggerDelay.AppendSummary(sb);
+    sb.append(" dropped=").append(mTriggersDropped);
+    return sb.toString();
+  }
+
+  /**
+   * Discards the audio, but sleeps as long as it would take to play,
+   * so the mixer runs at its real rate.  For measuring off-device.
+   */
+  static class NullSink implements Sink {
+    private long mNextNanos = 0;
+
+    public void Write(short[] pcm, int count) {
+      long now = System.nanoTime();
+      if (mNextNanos == 0 || mNextNanos < now - 1000L * 1000 * 1000) {
+        mNextNanos = now;  // first buffer, or fell far behind
+      }
+      mNextNanos += count * (1000L * 1000 * 1000) / SAMPLE_RATE;
+      long wait = mNextNanos - now;
+      if (wait > 0) {
+        LockSupport.parkNanos(this, wait);
+      }
+    }
+
+    public void Pause() {
+      mNextNanos = 0;  // restart the clock on the next Write()
+    }
+
+    public void Close() {
+    }
+  }
+
+  /** Writes the audio as raw little-endian 16-bit PCM, in real time. */
+  static class StreamSink extends NullSink {
+    private OutputStream mStream;
+    private byte[] mBytes = new byte[0];
+
+    public StreamSink(OutputStream stream) {
+      mStream = stream;
+    }
+
+    public void Write(short[] pcm, int count) {
+      if (mStream != null) {
+        if (mBytes.length < count * 2) {
+          mBytes = new byte[count * 2];
+        }
+        for (int i = 0; i < count; i++) {
+          mBytes[2 * i] = (byte) pcm[i];
+          mBytes[2 * i + 1] = (byte) (pcm[i] >> 8);
+        }
+        try {
+          mStream.write(mBytes, 0, count * 2);
+        } catch (IOException e) {
+          Close();
+        }
+      }
+      super.Write(pcm, count);
+    }
+
+    public void Close() {
+      if (mStream != null) {
+        try {
+          mStream.close();
+        } catch (IOException e) {
+        }
+        mStream = null;
+      }
+    }
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tulrich.flingers;
+
+/**
+ * Keeps the last few timestamped positions of a drag, and fits a
+ * straight line through the recent ones to get its velocity, which
+ * can also extrapolate a little past the latest sample.
+ *
+ * Touch positions arrive quantized and jittery, so a velocity from
+ * the last two samples is mostly noise; a least-squares fit over a
+ * short window is steady and still follows a flick.  The ring is a
+ * fixed size, so recording a sample never allocates.
+ */
+class TouchTracker {
+  private final long[] mTimes;
+  private final float[] mX;
+  private final float[] mY;
+  private int mNext = 0;
+  private int mCount = 0;
+
+  // Result of the last Fit().
+  private float mVelX = 0;
+  private float mVelY = 0;
+
+  /** @param capacity most samples kept */
+  public TouchTracker(int capacity) {
+    mTimes = new long[capacity];
+    mX = new float[capacity];
+    mY = new float[capacity];
+  }
+
+  /** Forgets all samples, e.g. at the start of a new drag. */
+  public void Clear() {
+    mNext = 0;
+    mCount = 0;
+    mVelX = 0;
+    mVelY = 0;
+  }
+
+  /**
+   * Records a position at timeMillis.  Samples must come in time
+   * order; out-of-order ones are dropped.
+   */
+  public void Add(long timeMillis, float x, float y) {
+    if (mCount > 0 && timeMillis < mTimes[Index(0)]) {
+      return;
+    }
+    mTimes[mNext] = timeMillis;
+    mX[mNext] = x;
+    mY[mNext] = y;
+    mNext = (mNext + 1) % mTimes.length;
+    mCount = Math.min(mCount + 1, mTimes.length);
+  }
+
+  public int Count() {
+    return mCount;
+  }
+
+  // Ring slot of the age'th newest sample.
+  private int Index(int age) {
+    int n = mTimes.length;
+    return (mNext - 1 - age + n) % n;
+  }
+
+  /**
+   * Fits a line through the samples taken in the windowMillis before
+   * nowMillis.  Returns false, and a zero velocity, if there are fewer
+   * than two such samples spread out in time; so a drag that has
+   * stopped sending samples reads as stopped.
+   */
+  public boolean Fit(long nowMillis, long windowMillis) {
+    mVelX = 0;
+    mVelY = 0;
+    if (mCount == 0) {
+      return false;
+    }
+    long latest = mTimes[Index(0)];
+
+    // Means first, with time in seconds relative to the latest sample.
+    int n = 0;
+    float sumT = 0;
+    float sumX = 0;
+    float sumY = 0;
+    for (int age = 0; age < mCount; age++) {
+      int i = Index(age);
+      if (nowMillis - mTimes[i] > windowMillis) {
+        break;
+      }
+      sumT += -(latest - mTimes[i]) / 1000.0f;
+      sumX += mX[i];
+      sumY += mY[i];
+      n++;
+    }
+    if (n < 2) {
+      return false;
+    }
+    float meanT = sumT / n;
+    float meanX = sumX / n;
+    float meanY = sumY / n;
+
+    float stt = 0;
+    float stx = 0;
+    float sty = 0;
+    for (int age = 0; age < n; age++) {
+      int i = Index(age);
+      float t = -(latest - mTimes[i]) / 1000.0f - meanT;
+      stt += t * t;
+      stx += t * (mX[i] - meanX);
+      sty += t * (mY[i] - meanY);
+    }
+    if (stt <= 0) {
+      return false;
+    }
+    mVelX = stx / stt;
+    mVelY = sty / stt;
+    return true;
+  }
+
+  /** Velocity from the last Fit(), in units per second. */
+  public float VelocityX() {
+    return mVelX;
+  }
+
+  public float VelocityY() {
+    return mVelY;
+  }
+
+  /**
+   * Extrapolates from the latest sample aheadMillis further, at the
+   * velocity from the last Fit().  Starting from the sample rather
+   * than the fitted line keeps the prediction from lagging the finger.
+   */
+  public float PredictX(long aheadMillis) {
+    return mCount == 0 ? 0 : mX[Index(0)] + mVelX * (aheadMillis / 1000.0f);
+  }
+
+  public float PredictY(long aheadMillis) {
+    return mCount == 0 ? 0 : mY[Index(0)] + mVelY * (aheadMillis / 1000.0f);
+  }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tulrich.flingers;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records timed spans and instant events into a fixed-size ring, and
+ * writes them out in Chrome's trace-event JSON format, for
+ * chrome://tracing or Perfetto.
+ *
+ * Recording is lock-free: each event claims a slot with one atomic
+ * increment and fills in four longs, so any thread may record.  Once
+ * the ring wraps, the oldest events are overwritten.  A recorder built
+ * disabled (release builds) records nothing and has no ring to speak
+ * of.
+ *
+ * Each slot is a small seqlock.  All of a slot's fields live in one
+ * AtomicLongArray, so every store and load is atomic (no torn longs
+ * on 32-bit) and ordered: the reader checks the slot's sequence number
+ * before and after reading the payload, and skips the event if the
+ * two disagree.
+ *
+ * Spans are recorded once, at their end, as complete ("X") events
+ * with a start time and duration; that halves the cost of separate
+ * begin/end events and can't leave a span unbalanced.
+ */
+class TraceRecorder {
+  private static final char PHASE_COMPLETE = 'X';
+  private static final char PHASE_INSTANT = 'i';
+
+  // Fields of a slot, at slot * SLOT_SIZE.
+  private static final int SEQ = 0;  // cursor value + 1 once filled; 0 while writing
+  private static final int START = 1;
+  private static final int DURATION = 2;
+  private static final int META = 3;  // name << 32 | tid << 16 | phase
+  private static final int SLOT_SIZE = 4;
+
+  private final int mMask;
+  private final AtomicLongArray mSlots;
+  private final AtomicLong mCursor = new AtomicLong(0);
+
+  private final ArrayList<String> mNames = new ArrayList<String>();
+  private final ArrayList<String> mThreadNames = new ArrayList<String>();
+  private final long mEpoch = System.nanoTime();
+  private final boolean mEnabled;
+
+  /**
+   * @param log2Capacity the ring holds 2^log2Capacity events.
+   * @param enabled false to make recording a no-op
+   */
+  public TraceRecorder(int log2Capacity, boolean enabled) {
+    mEnabled = enabled;
+    int n = enabled ? 1 << log2Capacity : 1;
+    mMask = n - 1;
+    mSlots = new AtomicLongArray(n * SLOT_SIZE);
+  }
+
+  /** Returns the id to record events named name under.  Not for hot paths. */
+  public synchronized int RegisterName(String name) {
+    int i = mNames.indexOf(name);
+    if (i >= 0) {
+      return i;
+    }
+    mNames.add(name);
+    return mNames.size() - 1;
+  }
+
+  /** Returns a thread id for events, shown as name in the viewer. */
+  public synchronized int RegisterThread(String name) {
+    mThreadNames.add(name);
+    return mThreadNames.size() - 1;
+  }
+
+  private void Record(char phase, int name, int tid, long start, long duration) {
+    if (!mEnabled) {
+      return;
+    }
+    long seq = mCursor.getAndIncrement();
+    int base = ((int) seq & mMask) * SLOT_SIZE;
+    mSlots.set(base + SEQ, 0);  // mark as being written
+    mSlots.set(base + START, start);
+    mSlots.set(base + DURATION, duration);
+    mSlots.set(base + META, ((long) name << 32) | ((long) (tid & 0xffff) << 16) | phase);
+    mSlots.lazySet(base + SEQ, seq + 1);
+  }
+
+  /** Records a span from start to end, both System.nanoTime() values. */
+  public void Complete(int name, int tid, long start, long end) {
+    Record(PHASE_COMPLETE, name, tid, start, end - start);
+  }
+
+  /** Records a point-in-time event. */
+  public void Instant(int name, int tid) {
+    Record(PHASE_INSTANT, name, tid, System.nanoTime(), 0);
+  }
+
+  private static void AppendMicros(StringBuilder sb, long nanos) {
+    sb.append(nanos / 1000).append('.');
+    long frac = nanos % 1000;
+    if (frac < 100) {
+      sb.append('0');
+    }
+    if (frac < 10) {
+      sb.append('0');
+    }
+    sb.append(frac);
+  }
+
+  private static void AppendQuoted(StringBuilder sb, String s) {
+    sb.append('"');
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c == '"' || c == '\\') {
+        sb.append('\\');
+      }
+      sb.append(c);
+    }
+    sb.append('"');
+  }
+
+  /**
+   * Writes the ring's contents, oldest first, as a trace-event JSON
+   * object.  Events being written while we read are skipped.
+   */
+  public void Dump(Writer out) throws IOException {
+    String[] names;
+    String[] threads;
+    synchronized (this) {
+      names = mNames.toArray(new String[mNames.size()]);
+      threads = mThreadNames.toArray(new String[mThreadNames.size()]);
+    }
+
+    StringBuilder sb = new StringBuilder(256);
+    out.write("{\"traceEvents\":[\n");
+    boolean first = true;
+    for (int t = 0; t < threads.length; t++) {
+      sb.setLength(0);
+      if (!first) {
+        sb.append(",\n");
+      }
+      first = false;
+      sb.append("{\"ph\":\"M\",\"pid\":1,\"tid\":").append(t);
+      sb.append(",\"name\":\"thread_name\",\"args\":{\"name\":");
+      AppendQuoted(sb, threads[t]);
+      sb.append("}}");
+      out.write(sb.toString());
+    }
+
+    long end = mCursor.get();
+    long begin = Math.max(0, end - (mMask + 1));
+    for (long seq = begin; seq < end; seq++) {
+      int base = ((int) seq & mMask) * SLOT_SIZE;
+      if (mSlots.get(base + SEQ) != seq + 1) {
+        continue;
+      }
+      long start = mSlots.get(base + START);
+      long duration = mSlots.get(base + DURATION);
+      long meta = mSlots.get(base + META);
+      if (mSlots.get(base + SEQ) != seq + 1) {
+        continue;  // overwritten while we read it
+      }
+      int name = (int) (meta >>> 32);
+      int tid = (int) (meta >>> 16) & 0xffff;
+      char phase = (char) meta;
+      if (name < 0 || name >= names.length) {
+        continue;
+      }
+
+      sb.setLength(0);
+      if (!first) {
+        sb.append(",\n");
+      }
+      first = false;
+      sb.append("{\"ph\":\"").append(phase).append("\",\"pid\":1,\"tid\":").append(tid);
+      sb.append(",\"name\":");
+      AppendQuoted(sb, names[name]);
+      sb.append(",\"ts\":");
+      AppendMicros(sb, start - mEpoch);
+      if (phase == PHASE_COMPLETE) {
+        sb.append(",\"dur\":");
+        AppendMicros(sb, duration);
+      } else {
+        sb.append(",\"s\":\"g\"");
+      }
+      sb.append('}');
+      out.write(sb.toString());
+    }
+    out.write("\n]}\n");
+  }
+}
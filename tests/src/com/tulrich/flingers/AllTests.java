@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tulrich.flingers;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/** The desktop unit tests; "ant test" runs this suite. */
+public class AllTests {
+  public static Test suite() {
+    TestSuite suite = new TestSuite("Flingers desktop tests");
+    suite.addTestSuite(AllocTrackerTest.class);
+    suite.addTestSuite(HapticsDispatcherTest.class);
+    suite.addTestSuite(InputLatencyTest.class);
+    suite.addTestSuite(LevelParamsTest.class);
+    suite.addTestSuite(QualityControllerTest.class);
+    suite.addTestSuite(SoftwareRasterizerTest.class);
+    suite.addTestSuite(SoundMixerTest.class);
+    suite.addTestSuite(TouchTrackerTest.class);
+    return suite;
+  }
+}
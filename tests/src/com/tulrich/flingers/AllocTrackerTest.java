@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tulrich.flingers;
+
+import java.lang.management.ManagementFactory;
+
+import junit.framework.TestCase;
+
+/**
+ * A steady-state frame that allocates must fail AssertSteadyState();
+ * warm-up frames and frames that spawn something must not.
+ *
+ * The measured tests use the JVM's per-thread allocated byte count as
+ * the Counter, standing in for Debug.getThreadAllocCount(), and run
+ * the per-frame code that builds without Android: particles, touch
+ * fitting, recording, the frame handoff, rasterizing, profiling and
+ * quality control.  They expect an interpreted JVM (-Xint, as "ant
+ * test" runs them); see build.xml.
+ */
+public class AllocTrackerTest extends TestCase {
+  private static final int WARMUP = 60;
+
+  private static final AllocTracker.Counter JVM_BYTES = new AllocTracker.Counter() {
+      private final com.sun.management.ThreadMXBean mThreads =
+          (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+      public long ThreadAllocations() {
+        return mThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+    };
+
+  /** One steady-state frame's worth of the game's Android-free work. */
+  private static class Pipeline {
+    final ParticleSystem mParticles = new ParticleSystem(256);
+    final TouchTracker mTouch = new TouchTracker(16);
+    final SoftwareRasterizer mRaster = new SoftwareRasterizer(64, 48);
+    final FrameTripleBuffer mFrames = new FrameTripleBuffer(mRaster);
+    final FrameProfiler mProfiler = new FrameProfiler();
+    final QualityController mQuality =
+        new QualityController(new String[] { "full", "reduced" }, 16 * 1000 * 1000);
+    final RenderPaint mPaint = new RenderPaint();
+    final String mScore = "1200";
+    int mFrame = 0;
+
+    Pipeline() {
+      mPaint.setARGB(255, 255, 255, 0);
+      mPaint.setTextSize(12);
+    }
+
+    void Frame() {
+      long frameStart = System.nanoTime();
+      long millis = mFrame * 16L;
+      mTouch.Add(millis, mFrame % 64, 24);
+      mTouch.Fit(millis, 100);
+
+      long t = System.nanoTime();
+      mParticles.Emit(4, 0, 32, 24, 0, 20, 20, 0.5f, 2);
+      mParticles.Update(1 / 60f, -40);
+      mProfiler.Mark(FrameProfiler.PARTICLES, t);
+
+      t = System.nanoTime();
+      RenderCommandList frame = mFrames.GetBack();
+      frame.Clear();
+      for (int i = 0; i < mParticles.Count(); i++) {
+        frame.DrawCircle(mParticles.X(i), mParticles.Y(i), mParticles.Size(i), mPaint);
+      }
+      frame.DrawLine(32, 24, mTouch.PredictX(16), mTouch.PredictY(16), mPaint);
+      frame.DrawText(mScore, 4, 12, mPaint);
+      mProfiler.Mark(FrameProfiler.DRAW, t);
+      mFrames.Publish();
+      mProfiler.Mark(FrameProfiler.FRAME, frameStart);
+      mProfiler.CommitFrame(FrameProfiler.FIRST_SIM_PHASE, FrameProfiler.LAST_SIM_PHASE);
+
+      t = System.nanoTime();
+      mFrames.Acquire();
+      mRaster.Clear(0xff000000);
+      mFrames.GetFront().Replay(mRaster);
+      mProfiler.Mark(FrameProfiler.RASTER, t);
+      mProfiler.CommitFrame(FrameProfiler.FIRST_RENDER_PHASE, FrameProfiler.LAST_RENDER_PHASE);
+
+      mQuality.AddFrame(16 * 1000 * 1000);
+      mFrame++;
+    }
+  }
+
+  private static void MeasuredFrame(AllocTracker allocs, Pipeline pipeline) {
+    allocs.BeginMeasure();
+    pipeline.Frame();
+    allocs.EndMeasure();
+    allocs.Pool(AllocTracker.POOL_COMMANDS, pipeline.mFrames.TotalSize(),
+                pipeline.mFrames.TotalCapacity());
+  }
+
+  private static int[] sGarbage;
+
+  private static AllocTracker WarmedUp() {
+    AllocTracker allocs = new AllocTracker(true);
+    for (int i = 0; i < WARMUP; i++) {
+      allocs.Pool(AllocTracker.POOL_COMMANDS, 10, 64 << (i / 20));
+      allocs.Count(AllocTracker.DRAW_TEXT);
+      allocs.EndFrame();
+    }
+    return allocs;
+  }
+
+  public void testWarmupIsAllowed() {
+    AllocTracker allocs = WarmedUp();
+    assertEquals(0, allocs.Violations());
+    allocs.AssertSteadyState();
+  }
+
+  public void testQuietFramesPass() {
+    AllocTracker allocs = WarmedUp();
+    for (int i = 0; i < 100; i++) {
+      allocs.Pool(AllocTracker.POOL_COMMANDS, 10, 256);
+      assertFalse(allocs.EndFrame());
+    }
+    allocs.AssertSteadyState();
+  }
+
+  public void testSpawningFrameMayAllocate() {
+    AllocTracker allocs = WarmedUp();
+    allocs.Count(AllocTracker.TARGET);
+    allocs.Count(AllocTracker.SCORE_TEXT);
+    assertFalse(allocs.EndFrame());
+    allocs.AssertSteadyState();
+  }
+
+  public void testSteadyStateGarbageFails() {
+    AllocTracker allocs = WarmedUp();
+    allocs.Count(AllocTracker.MESSAGE);
+    assertTrue(allocs.EndFrame());
+    try {
+      allocs.AssertSteadyState();
+      fail("steady-state allocation not caught");
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  public void testSteadyStatePoolGrowthFails() {
+    AllocTracker allocs = WarmedUp();
+    allocs.Pool(AllocTracker.POOL_COMMANDS, 10, 1000);
+    assertTrue(allocs.EndFrame());
+    assertEquals(1, allocs.Violations());
+  }
+
+  public void testRealFramesDoNotAllocate() {
+    AllocTracker allocs = new AllocTracker(true, JVM_BYTES);
+    Pipeline pipeline = new Pipeline();
+    for (int i = 0; i < WARMUP; i++) {
+      MeasuredFrame(allocs, pipeline);
+      allocs.EndFrame();
+    }
+    allocs.Reset();
+    for (int i = 0; i < 300; i++) {
+      MeasuredFrame(allocs, pipeline);
+      allocs.EndFrame();
+    }
+    assertTrue(allocs.Report(), allocs.Report().contains(" measured=0 "));
+    allocs.AssertSteadyState();
+  }
+
+  public void testMeasuredGarbageFails() {
+    AllocTracker allocs = new AllocTracker(true, JVM_BYTES);
+    Pipeline pipeline = new Pipeline();
+    for (int i = 0; i < WARMUP; i++) {
+      MeasuredFrame(allocs, pipeline);
+      allocs.EndFrame();
+    }
+    allocs.BeginMeasure();
+    pipeline.Frame();
+    // Garbage nobody placed a Count() for.
+    sGarbage = new int[16];
+    allocs.EndMeasure();
+    assertTrue(allocs.EndFrame());
+    assertEquals(1, allocs.Violations());
+  }
+
+  public void testDisabledTracksNothing() {
+    AllocTracker allocs = new AllocTracker(false);
+    for (int i = 0; i < 2 * WARMUP; i++) {
+      allocs.Count(AllocTracker.MESSAGE);
+      assertFalse(allocs.EndFrame());
+    }
+    allocs.AssertSteadyState();
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tulrich.flingers;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+/**
+ * Pulses sent together merge into one vibration, and a type that
+ * fired recently is dropped while others still play.
+ *
+ * Nothing here waits for a vibration not to happen: after the
+ * vibration under test, each test sends a marker pulse of a type with
+ * no minimum interval, and expects the marker to be the very next
+ * vibration.
+ */
+public class HapticsDispatcherTest extends TestCase {
+  private static final int TICK = 0;  // long minimum interval
+  private static final int THUD = 1;
+  private static final int BUZZ = 2;
+  private static final int MARKER = 3;
+
+  private static final long[] INTERVALS = { 10000, 0, 0, 0 };
+
+  private static class QueueSink implements HapticsDispatcher.Sink {
+    final LinkedBlockingQueue<Long> mVibrations = new LinkedBlockingQueue<Long>();
+
+    public void Vibrate(long millis) {
+      mVibrations.add(Long.valueOf(millis));
+    }
+
+    long Next() throws InterruptedException {
+      Long millis = mVibrations.poll(5, TimeUnit.SECONDS);
+      assertNotNull("no vibration", millis);
+      return millis.longValue();
+    }
+  }
+
+  public void testPulsesInWindowMerge() throws Exception {
+    QueueSink sink = new QueueSink();
+    // A long window, so the three pulses surely land in it.
+    HapticsDispatcher haptics = new HapticsDispatcher(sink, INTERVALS, 200);
+    try {
+      haptics.Pulse(THUD, 20);
+      haptics.Pulse(BUZZ, 50);
+      haptics.Pulse(THUD, 30);
+      // One vibration, as long as the longest pulse.
+      assertEquals(50, sink.Next());
+      haptics.Pulse(MARKER, 7);
+      assertEquals(7, sink.Next());
+      // The vibration count may lag the sink by the marker.
+      assertTrue(haptics.Report(), haptics.Report().startsWith("haptics pulses=4 "));
+      assertTrue(haptics.Report(), haptics.Report().endsWith(" dropped=0"));
+    } finally {
+      haptics.Shutdown();
+    }
+  }
+
+  public void testTypeIsRateLimited() throws Exception {
+    QueueSink sink = new QueueSink();
+    HapticsDispatcher haptics = new HapticsDispatcher(sink, INTERVALS, 5);
+    try {
+      haptics.Pulse(TICK, 20);
+      assertEquals(20, sink.Next());
+      // Well inside TICK's interval: dropped, but THUD still plays.
+      haptics.Pulse(TICK, 30);
+      haptics.Pulse(THUD, 40);
+      assertEquals(40, sink.Next());
+      haptics.Pulse(TICK, 30);
+      haptics.Pulse(MARKER, 7);
+      assertEquals(7, sink.Next());
+      assertTrue(haptics.Report(), haptics.Report().startsWith("haptics pulses=5 "));
+      assertTrue(haptics.Report(), haptics.Report().endsWith(" dropped=2"));
+    } finally {
+      haptics.Shutdown();
+    }
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tulrich.flingers;
+
+import junit.framework.TestCase;
+
+/**
+ * Feeds InputLatency known input, record and post times and checks
+ * the percentiles.  Histogram percentiles are bucket upper bounds
+ * (1ms buckets here), capped at the exact max.
+ */
+public class InputLatencyTest extends TestCase {
+  private static final long MS = 1000 * 1000;
+  private static final long BASE = 5000 * MS;
+
+  // 100 inputs: recorded 4.5ms after the input, posted after
+  // 0.5ms, 1.5ms, ... 99.5ms.
+  private static InputLatency Sample() {
+    InputLatency latency = new InputLatency();
+    for (int k = 0; k < 100; k++) {
+      long input = BASE + k * 50 * MS;
+      latency.Record(input, input + 9 * MS / 2, input + k * MS + MS / 2);
+    }
+    return latency;
+  }
+
+  public void testToPostPercentiles() {
+    Histogram h = Sample().ToPost();
+    assertEquals(100, h.Count());
+    assertEquals(50 * MS, h.Percentile(50));
+    assertEquals(95 * MS, h.Percentile(95));
+    assertEquals(99 * MS + MS / 2, h.Max());
+  }
+
+  public void testToRecordPercentiles() {
+    Histogram h = Sample().ToRecord();
+    assertEquals(100, h.Count());
+    // All in the 4ms bucket, so every percentile is capped at the max.
+    assertEquals(9 * MS / 2, h.Percentile(50));
+    assertEquals(9 * MS / 2, h.Percentile(95));
+    assertEquals(9 * MS / 2, h.Max());
+  }
+
+  public void testReport() {
+    String report = Sample().ReportToPost();
+    assertEquals("input-to-post n=100 p50=50.00 p95=95.00 p99=99.00 max=99.50 ms", report);
+  }
+
+  public void testResetTakesEffectOnNextRecord() {
+    InputLatency latency = Sample();
+    latency.Reset();
+    assertEquals(0, latency.Count());
+    latency.Record(BASE, BASE + 2 * MS, BASE + 30 * MS);
+    assertEquals(1, latency.Count());
+    assertEquals(1, latency.ToRecord().Count());
+    assertEquals(30 * MS, latency.ToPost().Max());
+  }
+}
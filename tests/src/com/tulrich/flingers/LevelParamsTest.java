@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tulrich.flingers;
+
+import junit.framework.TestCase;
+
+/**
+ * LevelParams.Parse(): keys override the built-in tuning, left-out
+ * keys keep it, and anything malformed or out of range is rejected.
+ */
+public class LevelParamsTest extends TestCase {
+  private static final float MUNCH = 3.0f;
+
+  public void testEmptyDefinitionIsBuiltIn() {
+    for (int level = 1; level <= 12; level++) {
+      LevelParams parsed = LevelParams.Parse(level, "  ", MUNCH);
+      LevelParams builtIn = LevelParams.ForLevel(level, MUNCH);
+      assertEquals(builtIn.mWalkSpeedFactor, parsed.mWalkSpeedFactor);
+      assertEquals(builtIn.mMunchTime, parsed.mMunchTime);
+      assertEquals(builtIn.mMunchPauseTime, parsed.mMunchPauseTime);
+      assertEquals(builtIn.mEggsToAdd, parsed.mEggsToAdd);
+      assertEquals(builtIn.mMaxEggsToLay, parsed.mMaxEggsToLay);
+    }
+  }
+
+  public void testKeysOverride() {
+    LevelParams p = LevelParams.Parse(3, "walk=0.5 pause=0.25 eggs=7 lay=0", MUNCH);
+    assertEquals(3, p.mLevel);
+    assertEquals(0.5f, p.mWalkSpeedFactor);
+    // Munch time scales inversely with walk speed.
+    assertEquals(6.0f, p.mMunchTime);
+    assertEquals(0.25f, p.mMunchPauseTime);
+    assertEquals(7, p.mEggsToAdd);
+    assertEquals(0, p.mMaxEggsToLay);
+  }
+
+  public void testLeftOutKeysKeepBuiltIn() {
+    LevelParams p = LevelParams.Parse(6, "eggs=2", MUNCH);
+    LevelParams builtIn = LevelParams.ForLevel(6, MUNCH);
+    assertEquals(2, p.mEggsToAdd);
+    assertEquals(builtIn.mWalkSpeedFactor, p.mWalkSpeedFactor);
+    assertEquals(builtIn.mMunchPauseTime, p.mMunchPauseTime);
+    assertEquals(builtIn.mMaxEggsToLay, p.mMaxEggsToLay);
+  }
+
+  private static void AssertRejected(String definition) {
+    try {
+      LevelParams.Parse(1, definition, MUNCH);
+      fail("accepted \"" + definition + "\"");
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  public void testRejectsBadWalk() {
+    AssertRejected("walk=0");
+    AssertRejected("walk=-1");
+    AssertRejected("walk=NaN");
+    AssertRejected("walk=Infinity");
+  }
+
+  public void testRejectsBadPause() {
+    AssertRejected("pause=-0.5");
+    AssertRejected("pause=NaN");
+    AssertRejected("pause=Infinity");
+  }
+
+  public void testRejectsNegativeCounts() {
+    AssertRejected("eggs=-1");
+    AssertRejected("lay=-1");
+  }
+
+  public void testRejectsMalformed() {
+    AssertRejected("walk");
+    AssertRejected("speed=1");
+    AssertRejected("eggs=two");
+    AssertRejected("lay=1.5");
+  }
+}
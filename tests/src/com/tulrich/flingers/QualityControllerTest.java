@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tulrich.flingers;
+
+import junit.framework.TestCase;
+
+/**
+ * QualityController.AddFrame() against a 16ms budget: when it drops a
+ * tier, when it raises one, and which frames it leaves out.
+ */
+public class QualityControllerTest extends TestCase {
+  private static final long MS = 1000 * 1000;
+  private static final long BUDGET = 16 * MS;
+  private static final int WINDOW = QualityController.WINDOW;
+
+  // Well over 115% of the budget, and well under 70%.
+  private static final long SLOW = 20 * MS;
+  private static final long FAST = 10 * MS;
+
+  private static QualityController Controller() {
+    return new QualityController(new String[] { "full", "medium", "low" }, BUDGET);
+  }
+
+  // Feeds count frames of interval, and fails if any changes the tier.
+  private static void FeedSteady(QualityController q, int count, long interval) {
+    int tier = q.Tier();
+    for (int i = 0; i < count; i++) {
+      assertFalse("changed at frame " + i, q.AddFrame(interval));
+      assertEquals(tier, q.Tier());
+    }
+  }
+
+  public void testDegradesAboveThreshold() {
+    QualityController q = Controller();
+    FeedSteady(q, WINDOW - 1, SLOW);
+    // The window fills, and its average is over budget.
+    assertTrue(q.AddFrame(SLOW));
+    assertEquals(1, q.Tier());
+    assertEquals(SLOW, q.ChangeAverageNanos());
+  }
+
+  public void testStaysJustUnderThreshold() {
+    QualityController q = Controller();
+    // 18ms is 112.5% of the budget: slow, but not enough to degrade.
+    FeedSteady(q, 10 * WINDOW, 18 * MS);
+    assertEquals(0, q.Tier());
+  }
+
+  public void testNeverDegradesPastLastTier() {
+    QualityController q = Controller();
+    for (int i = 0; i < 20 * WINDOW; i++) {
+      q.AddFrame(SLOW);
+    }
+    assertEquals(2, q.Tier());
+  }
+
+  public void testUpgradesAfterThreeWholeWindows() {
+    QualityController q = Controller();
+    FeedSteady(q, WINDOW - 1, SLOW);
+    assertTrue(q.AddFrame(SLOW));
+    assertEquals(1, q.Tier());
+
+    // One window per good count, not one per frame past the first.
+    FeedSteady(q, 3 * WINDOW - 1, FAST);
+    assertTrue(q.AddFrame(FAST));
+    assertEquals(0, q.Tier());
+    assertEquals(FAST, q.ChangeAverageNanos());
+  }
+
+  public void testMiddlingWindowResetsUpgrade() {
+    QualityController q = Controller();
+    FeedSteady(q, WINDOW - 1, SLOW);
+    assertTrue(q.AddFrame(SLOW));
+
+    // Two good windows, then one at budget, then two more good ones:
+    // never three in a row.
+    FeedSteady(q, 2 * WINDOW, FAST);
+    FeedSteady(q, WINDOW, BUDGET);
+    FeedSteady(q, 2 * WINDOW, FAST);
+    assertEquals(1, q.Tier());
+  }
+
+  public void testWindowRestartsAfterChange() {
+    QualityController q = Controller();
+    FeedSteady(q, WINDOW - 1, SLOW);
+    assertTrue(q.AddFrame(SLOW));
+
+    // Frames from before the change don't count: it takes a whole new
+    // window, even of very slow frames, to drop another tier.
+    FeedSteady(q, WINDOW - 1, 100 * MS);
+    assertTrue(q.AddFrame(100 * MS));
+    assertEquals(2, q.Tier());
+  }
+
+  public void testLongGapsAreIgnored() {
+    QualityController q = Controller();
+    FeedSteady(q, WINDOW - 1, SLOW);
+    // A pause: left out, and the window starts over.
+    FeedSteady(q, 1, 300 * MS);
+    FeedSteady(q, WINDOW - 1, SLOW);
+    assertTrue(q.AddFrame(SLOW));
+    assertEquals(1, q.Tier());
+  }
+
+  public void testGapAtLimitCounts() {
+    QualityController q = Controller();
+    FeedSteady(q, WINDOW - 1, 16 * MS);
+    // 250ms is still a frame; it pulls the average over budget.
+    assertTrue(q.AddFrame(250 * MS));
+    assertEquals(1, q.Tier());
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tulrich.flingers;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+import junit.framework.TestCase;
+
+/**
+ * Runs SoundMixer headless, through a sink the test steps one buffer
+ * at a time, so nothing depends on how fast the mixer thread runs.
+ */
+public class SoundMixerTest extends TestCase {
+  private static final int BUFFER_FRAMES = 256;
+
+  // What SteppedSink.Next() returns for a Pause().
+  private static final int PAUSE = Integer.MIN_VALUE;
+
+  private static short[] Constant(int length, int value) {
+    short[] pcm = new short[length];
+    for (int i = 0; i < length; i++) {
+      pcm[i] = (short) value;
+    }
+    return pcm;
+  }
+
+  /**
+   * Hands each buffer's first sample to the test, then blocks until
+   * the test calls Release().  Pause() hands over PAUSE and doesn't
+   * block.
+   */
+  private static class SteppedSink implements SoundMixer.Sink {
+    final LinkedBlockingQueue<Integer> mSamples = new LinkedBlockingQueue<Integer>();
+    final Semaphore mGo = new Semaphore(0);
+
+    public void Write(short[] pcm, int count) {
+      mSamples.add(Integer.valueOf(pcm[0]));
+      mGo.acquireUninterruptibly();
+    }
+
+    public void Pause() {
+      mSamples.add(Integer.valueOf(PAUSE));
+    }
+
+    public void Close() {
+    }
+
+    /**
+     * The next buffer's first sample, with the mixer waiting in
+     * Write(); or PAUSE.
+     */
+    int Next() throws InterruptedException {
+      return mSamples.take().intValue();
+    }
+
+    void Release() {
+      mGo.release();
+    }
+  }
+
+  public void testTriggerStartsNextBufferOnIdleMixer() throws Exception {
+    SoundMixer mixer = new SoundMixer(4, BUFFER_FRAMES);
+    int sound = mixer.Load(Constant(BUFFER_FRAMES / 2, 1000));
+    SteppedSink sink = new SteppedSink();
+    mixer.Start(sink);
+    try {
+      // Nothing to play, so it goes idle at once.
+      assertEquals(PAUSE, sink.Next());
+      for (int i = 0; i < 5; i++) {
+        assertTrue(mixer.Play(sound, 1));
+        // The idle mixer wakes on Play(): the very next buffer has the
+        // sound, with no silent buffer ahead of it.
+        assertEquals(1000, sink.Next());
+        assertEquals(i + 1, mixer.TriggerDelay().Count());
+        sink.Release();
+        assertEquals(PAUSE, sink.Next());
+      }
+    } finally {
+      mixer.Shutdown();
+      sink.Release();
+    }
+  }
+
+  public void testGoesIdleWhenSilent() throws Exception {
+    SoundMixer mixer = new SoundMixer(4, BUFFER_FRAMES);
+    int sound = mixer.Load(Constant(3 * BUFFER_FRAMES - 10, 1000));
+    SteppedSink sink = new SteppedSink();
+    mixer.Start(sink);
+    try {
+      assertEquals(PAUSE, sink.Next());
+      mixer.Play(sound, 1);
+      for (int i = 0; i < 3; i++) {
+        assertEquals(1000, sink.Next());
+        sink.Release();
+      }
+      // Three buffers of sound, then it pauses the sink instead of
+      // writing silence.
+      assertEquals(PAUSE, sink.Next());
+      assertEquals(3, mixer.MixNanos().Count());
+    } finally {
+      mixer.Shutdown();
+      sink.Release();
+    }
+  }
+
+  public void testNewSoundStealsVoiceFurthestAlong() throws Exception {
+    SoundMixer mixer = new SoundMixer(2, BUFFER_FRAMES);
+    int a = mixer.Load(Constant(SoundMixer.SAMPLE_RATE, 1000));
+    int b = mixer.Load(Constant(SoundMixer.SAMPLE_RATE, 100));
+    int c = mixer.Load(Constant(SoundMixer.SAMPLE_RATE, 10));
+    SteppedSink sink = new SteppedSink();
+    mixer.Play(a, 1);
+    mixer.Start(sink);
+    try {
+      assertEquals(1000, sink.Next());
+      sink.Release();
+      assertEquals(1000, sink.Next());
+      // The mixer is blocked handing over its second buffer, so both
+      // triggers land in the third.
+      mixer.Play(b, 1);
+      mixer.Play(c, 1);
+      sink.Release();
+      // b takes the free voice; c steals a's, which is further along.
+      assertEquals(110, sink.Next());
+      sink.Release();
+      assertEquals(110, sink.Next());
+    } finally {
+      mixer.Shutdown();
+      sink.Release();
+    }
+  }
+}
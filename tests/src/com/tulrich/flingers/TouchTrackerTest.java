@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tulrich.flingers;
+
+import junit.framework.TestCase;
+
+/**
+ * TouchTracker.Fit(): the slope of a straight drag, the ring wrapping
+ * over old samples, samples outside the window, and samples that come
+ * in out of order.
+ */
+public class TouchTrackerTest extends TestCase {
+  private static final float EPSILON = 0.01f;
+
+  // A drag at (vx, vy) units per second, sampled every 10ms from
+  // time 1000.
+  private static void Drag(TouchTracker tracker, int samples, float vx, float vy) {
+    for (int k = 0; k < samples; k++) {
+      tracker.Add(1000 + k * 10, vx * k / 100, vy * k / 100);
+    }
+  }
+
+  public void testFitsSlope() {
+    TouchTracker tracker = new TouchTracker(16);
+    Drag(tracker, 6, 300, -120);
+    assertTrue(tracker.Fit(1050, 80));
+    assertEquals(300, tracker.VelocityX(), EPSILON);
+    assertEquals(-120, tracker.VelocityY(), EPSILON);
+    // Prediction starts at the latest sample, (15, -6).
+    assertEquals(15 + 300 * 0.016f, tracker.PredictX(16), EPSILON);
+    assertEquals(-6 - 120 * 0.016f, tracker.PredictY(16), EPSILON);
+  }
+
+  public void testFitSmoothsJitter() {
+    TouchTracker tracker = new TouchTracker(16);
+    // Alternating +-1 jitter on a 200/s drag.
+    for (int k = 0; k < 8; k++) {
+      tracker.Add(1000 + k * 10, 2 * k + (k % 2 == 0 ? 1 : -1), 0);
+    }
+    assertTrue(tracker.Fit(1070, 80));
+    float vx = tracker.VelocityX();
+    assertTrue("velocity " + vx, vx > 150 && vx < 200);
+  }
+
+  public void testRingWrapsOverOldestSamples() {
+    TouchTracker tracker = new TouchTracker(4);
+    // A fast drag that then slows; only the last four samples remain.
+    Drag(tracker, 6, 1000, 0);
+    for (int k = 6; k < 10; k++) {
+      tracker.Add(1000 + k * 10, 60 + (k - 6), 0);
+    }
+    assertEquals(4, tracker.Count());
+    assertTrue(tracker.Fit(1090, 1000));
+    assertEquals(100, tracker.VelocityX(), EPSILON);
+    assertEquals(63, tracker.PredictX(0), EPSILON);
+  }
+
+  public void testStaleSamplesAreLeftOut() {
+    TouchTracker tracker = new TouchTracker(16);
+    Drag(tracker, 6, 300, 0);
+    // The finger stopped sending samples: nothing is in the window.
+    assertFalse(tracker.Fit(1050 + 200, 80));
+    assertEquals(0, tracker.VelocityX(), 0);
+    // Only the latest sample is recent enough: no fit either.
+    assertFalse(tracker.Fit(1050 + 15, 20));
+    // The last three are.
+    assertTrue(tracker.Fit(1050 + 5, 25));
+    assertEquals(300, tracker.VelocityX(), EPSILON);
+  }
+
+  public void testOutOfOrderSamplesAreDropped() {
+    TouchTracker tracker = new TouchTracker(16);
+    Drag(tracker, 6, 300, 0);
+    tracker.Add(1020, 500, 500);
+    assertEquals(6, tracker.Count());
+    assertTrue(tracker.Fit(1050, 80));
+    assertEquals(300, tracker.VelocityX(), EPSILON);
+    assertEquals(0, tracker.VelocityY(), EPSILON);
+    // A sample at the same time as the latest is still in order.
+    tracker.Add(1050, 15, 0);
+    assertEquals(7, tracker.Count());
+  }
+
+  public void testClearForgetsTheDrag() {
+    TouchTracker tracker = new TouchTracker(16);
+    Drag(tracker, 6, 300, 0);
+    tracker.Clear();
+    assertEquals(0, tracker.Count());
+    assertFalse(tracker.Fit(1050, 80));
+  }
+}